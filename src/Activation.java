@@ -0,0 +1,85 @@
+// Activation functions a network layer can use. The approximations trade a little
+// accuracy for speed, errors are the max absolute difference from Math.tanh
+public enum Activation {
+
+    TANH {
+        @Override
+        public double apply(double x) {
+            return Math.tanh(x);
+        }
+    },
+
+    // Pade (7,6) rational approximation, max error about 1e-4
+    TANH_PADE {
+        @Override
+        public double apply(double x) {
+            x = Math.max(-PADE_CLAMP, Math.min(PADE_CLAMP, x));
+            double x2 = x * x;
+            double numerator = x * (135135 + x2 * (17325 + x2 * (378 + x2)));
+            double denominator = 135135 + x2 * (62370 + x2 * (3150 + x2 * 28));
+            return Math.max(-1, Math.min(1, numerator / denominator));
+        }
+    },
+
+    // Table over [-8, 8] with linear interpolation, max error about 1.5e-6
+    TANH_LUT {
+        @Override
+        public double apply(double x) {
+            double position = (x + LUT_RANGE) * LUT_SCALE;
+            if (position <= 0) return TANH_TABLE[0];
+            if (position >= LUT_SIZE) return TANH_TABLE[LUT_SIZE];
+
+            int index = (int) position;
+            double t = position - index;
+            return TANH_TABLE[index] + (TANH_TABLE[index + 1] - TANH_TABLE[index]) * t;
+        }
+    },
+
+    HARD_TANH {
+        @Override
+        public double apply(double x) {
+            return Math.max(-1, Math.min(1, x));
+        }
+    },
+
+    RELU {
+        @Override
+        public double apply(double x) {
+            return Math.max(0, x);
+        }
+    },
+
+    SIGMOID {
+        @Override
+        public double apply(double x) {
+            return 1 / (1 + Math.exp(-x));
+        }
+    };
+
+    // Past this tanh is 1 to within the Pade approximation's error
+    static final double PADE_CLAMP = 4.97;
+
+    private static final int LUT_SIZE = 4096;
+    private static final double LUT_RANGE = 8;
+    private static final double LUT_SCALE = LUT_SIZE / (2 * LUT_RANGE);
+    private static final double[] TANH_TABLE = new double[LUT_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= LUT_SIZE; i++) {
+            TANH_TABLE[i] = Math.tanh(i / LUT_SCALE - LUT_RANGE);
+        }
+    }
+
+    public abstract double apply(double x);
+
+    public void applyAll(double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = apply(values[i]);
+        }
+    }
+
+    // Accepts names like "tanh_pade" or "relu"
+    public static Activation parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
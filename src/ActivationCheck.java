@@ -0,0 +1,59 @@
+public class ActivationCheck {
+
+    private static final Activation[] APPROXIMATIONS = {Activation.TANH_PADE, Activation.TANH_LUT};
+    private static final double[] MAX_ERROR = {1e-4, 1.5e-6}; // the bounds documented in Activation
+
+    private static final double RANGE = 12;
+    private static final int SAMPLES = 2_400_001;
+
+    // Sweeps a dense grid against Math.tanh with the scalar kernels and, when the Vector API
+    // is available, the vector kernels. Returns false if any approximation misses its bound
+    public static boolean run(){
+        boolean passed = check(new ScalarKernels(), "scalar");
+
+        Kernels vector = null;
+        try {
+            vector = new VectorKernels();
+        } catch (LinkageError e) {
+            System.out.println("Vector API not available, vector kernels not checked");
+        }
+        if (vector != null) {
+            passed &= check(vector, "vector");
+        }
+
+        return passed;
+    }
+
+    private static boolean check(Kernels kernels, String name){
+        double[] values = new double[SAMPLES];
+        boolean passed = true;
+
+        for (int a = 0; a < APPROXIMATIONS.length; a++) {
+            for (int i = 0; i < SAMPLES; i++) {
+                values[i] = x(i);
+            }
+            kernels.activate(APPROXIMATIONS[a], values, 0, SAMPLES);
+
+            double worst = 0;
+            double worstX = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                double error = Math.abs(values[i] - Math.tanh(x(i)));
+                if (error > worst) {
+                    worst = error;
+                    worstX = x(i);
+                }
+            }
+
+            boolean ok = worst <= MAX_ERROR[a];
+            passed &= ok;
+            System.out.println(APPROXIMATIONS[a] + " (" + name + "): max error " + String.format("%.3g", worst)
+                    + " at x = " + String.format("%.4f", worstX) + ", bound " + MAX_ERROR[a] + (ok ? "" : " EXCEEDED"));
+        }
+
+        return passed;
+    }
+
+    private static double x(int i){
+        return -RANGE + 2 * RANGE * i / (SAMPLES - 1);
+    }
+}
@@ -0,0 +1,45 @@
+import java.lang.management.ManagementFactory;
+
+public class AllocationCheck {
+
+    // Counts heap bytes the simulation thread allocates per tick once warmed up. Ticks that end
+    // a generation and the first tick of the next are left out, turnover builds the next
+    // course and repacks the inference batch
+    public static boolean run(int warmupTicks, int ticks){
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation check: per-thread allocation counting is not supported by this JVM");
+            return true;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < warmupTicks; i++) {
+            SimulationLoop.tick();
+        }
+
+        long total = 0;
+        long worst = 0;
+        int measured = 0;
+        int lastGeneration = Main.generation;
+
+        for (int i = 0; i < ticks; i++) {
+            int generation = Main.generation;
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            SimulationLoop.tick();
+            long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+            boolean turnover = Main.generation != generation || generation != lastGeneration;
+            lastGeneration = generation;
+            if (turnover) continue;
+
+            total += bytes;
+            worst = Math.max(worst, bytes);
+            measured++;
+        }
+
+        double mean = measured > 0 ? (double) total / measured : 0;
+        System.out.println("Allocation check: " + String.format("%.1f", mean) + " bytes per tick, worst " + worst + " bytes over " + measured + " ticks");
+        return total == 0;
+    }
+}
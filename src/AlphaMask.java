@@ -0,0 +1,101 @@
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Opaque pixels of a texture drawn at a given size, one bit per world pixel packed 64 to a
+// long, so two sprites overlap-test a whole row span with a few shifts and ANDs
+public class AlphaMask {
+
+    private static final ConcurrentHashMap<String, AlphaMask> cache = new ConcurrentHashMap<>();
+
+    public final BufferedImage source; // image the mask was sampled from
+    public final int width;
+    public final int height;
+    private final int wordsPerRow;
+    private final long[] bits; // bit x of row y is bits[y * wordsPerRow + x / 64] >>> (x % 64)
+
+    private AlphaMask(BufferedImage source, int width, int height) {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + 63) >>> 6;
+        bits = new long[wordsPerRow * height];
+    }
+
+    // Shared mask for a texture scaled to width x height, built on first use
+    public static AlphaMask get(String texture, BufferedImage image, int width, int height) {
+        String key = texture + "@" + width + "x" + height;
+        return cache.computeIfAbsent(key, k -> build(image, width, height));
+    }
+
+    // Uncached mask, for images that are not named textures
+    public static AlphaMask build(BufferedImage image, int width, int height) {
+        AlphaMask mask = new AlphaMask(image, Math.max(1, width), Math.max(1, height));
+
+        int imageWidth = image.getWidth();
+        int imageHeight = image.getHeight();
+        int[] argb = image.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
+
+        // Nearest pixel sampling, the same mapping the per-pixel check used
+        for (int y = 0; y < mask.height; y++) {
+            int sy = Math.min(imageHeight - 1, (int) ((long) y * imageHeight / mask.height));
+            int row = y * mask.wordsPerRow;
+
+            for (int x = 0; x < mask.width; x++) {
+                int sx = Math.min(imageWidth - 1, (int) ((long) x * imageWidth / mask.width));
+                if ((argb[sy * imageWidth + sx] >>> 24) != 0) {
+                    mask.bits[row + (x >>> 6)] |= 1L << (x & 63);
+                }
+            }
+        }
+
+        return mask;
+    }
+
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return (bits[y * wordsPerRow + (x >>> 6)] >>> (x & 63) & 1) != 0;
+    }
+
+    // True if this is the mask of image at width x height, sizes clamped the way build clamps them
+    public boolean matches(BufferedImage image, int width, int height) {
+        return source == image && this.width == Math.max(1, width) && this.height == Math.max(1, height);
+    }
+
+    // 64 bits of row y starting at column start, columns outside the mask read as clear
+    private long window(int y, int start) {
+        int word = Math.floorDiv(start, 64);
+        int shift = Math.floorMod(start, 64);
+
+        long low = word(y, word) >>> shift;
+        long high = shift == 0 ? 0 : word(y, word + 1) << (64 - shift);
+        return low | high;
+    }
+
+    private long word(int y, int word) {
+        if (word < 0 || word >= wordsPerRow) return 0;
+        return bits[y * wordsPerRow + word];
+    }
+
+    // True if any opaque pixel of a, with its top left corner at (ax, ay), lands on one of b's
+    public static boolean overlaps(AlphaMask a, int ax, int ay, AlphaMask b, int bx, int by) {
+        int left = Math.max(ax, bx);
+        int top = Math.max(ay, by);
+        int right = Math.min(ax + a.width, bx + b.width);
+        int bottom = Math.min(ay + a.height, by + b.height);
+
+        if (left >= right || top >= bottom) return false;
+
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x += 64) {
+                long overlap = a.window(y - ay, x - ax) & b.window(y - by, x - bx);
+
+                int span = right - x;
+                if (span < 64) overlap &= (1L << span) - 1;
+
+                if (overlap != 0) return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+public class BatchInference {
+
+    private final DinoAgent[] population;
+    private final int[] layers;
+    private final int[] layerOffsets;
+    private final Activation[] layerActivations;
+    private final int weightCount;
+
+    // Packed agents: value k of agent slot s lives at [k * count + s], so the
+    // inner loops run across agents over contiguous memory
+    private int count;
+    private DinoAgent[] agents;
+    private double[] weights;
+    private double[] inputs;
+    private double[][] activations;
+    private final double[] brainWeights;
+
+    public BatchInference(DinoAgent[] population) {
+        this.population = population;
+
+        NeuralNetwork sample = population[0].brain;
+        layers = sample.layers.clone();
+        weightCount = sample.getWeightCount();
+        brainWeights = new double[weightCount];
+
+        layerActivations = new Activation[layers.length - 1];
+        for (int l = 0; l < layerActivations.length; l++) {
+            layerActivations[l] = sample.getActivation(l);
+        }
+
+        layerOffsets = new int[layers.length - 1];
+        int total = 0;
+        for (int l = 0; l < layerOffsets.length; l++) {
+            layerOffsets[l] = total;
+            total += layers[l] * layers[l + 1];
+        }
+
+        for (DinoAgent agent : population) {
+            if (agent.brain.getWeightCount() != weightCount) {
+                throw new IllegalArgumentException("Batched inference needs every brain to have the same layers");
+            }
+            for (int l = 0; l < layerActivations.length; l++) {
+                if (agent.brain.getActivation(l) != layerActivations[l]) {
+                    throw new IllegalArgumentException("Batched inference needs every brain to use the same activations");
+                }
+            }
+        }
+
+        pack(population, population.length);
+    }
+
+    public DinoAgent[] getPopulation() {
+        return population;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Copies the given agents' weights into the batch tensor, assigning each a slot.
+    // Float and int8 brains are dequantized, so they score as they would alone up to rounding.
+    // The tensors are only allocated for the full population, compacting repacks them in place
+    private void pack(DinoAgent[] source, int newCount) {
+        count = newCount;
+        if (agents == null) {
+            agents = new DinoAgent[newCount];
+            weights = new double[weightCount * newCount];
+            inputs = new double[layers[0] * newCount];
+            activations = new double[layers.length - 1][];
+            for (int l = 0; l < activations.length; l++) {
+                activations[l] = new double[layers[l + 1] * newCount];
+            }
+        }
+
+        double[] w = brainWeights;
+        for (int s = 0; s < newCount; s++) {
+            DinoAgent agent = source[s];
+            agents[s] = agent;
+            agent.batchSlot = s;
+
+            agent.brain.copyWeightsTo(w);
+            for (int k = 0; k < weightCount; k++) {
+                weights[k * newCount + s] = w[k];
+            }
+        }
+    }
+
+    // Packs the whole population again after its brains were replaced, reusing the tensors
+    public void repack() {
+        pack(population, population.length);
+    }
+
+    // Drops dead agents once they make up most of the batch so they stop costing inference time
+    public void compact() {
+        int alive = 0;
+        for (int s = 0; s < count; s++) {
+            if (agents[s].alive) alive++;
+        }
+
+        if (alive == 0 || alive * 2 > count) return;
+
+        // Live agents keep their order, so moving them down in place never overwrites one unread
+        int next = 0;
+        for (int s = 0; s < count; s++) {
+            if (agents[s].alive) {
+                agents[next++] = agents[s];
+            } else {
+                agents[s].batchSlot = -1;
+            }
+        }
+
+        pack(agents, alive);
+    }
+
+    public void setInputs(int slot, double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            inputs[i * count + slot] = values[i];
+        }
+    }
+
+    public void getOutputs(int slot, double[] out) {
+        double[] last = activations[activations.length - 1];
+        for (int k = 0; k < out.length; k++) {
+            out[k] = last[k * count + slot];
+        }
+    }
+
+    // Evaluates every brain in slots [start, end) in one pass over the tensor
+    public void forward(int start, int end) {
+        Kernels kernels = Kernels.active;
+        int length = end - start;
+        double[] in = inputs;
+
+        for (int l = 0; l < activations.length; l++) {
+
+            int from = layers[l];
+            int to = layers[l + 1];
+            int offset = layerOffsets[l];
+            double[] out = activations[l];
+
+            for (int j = 0; j < to; j++) {
+                int o = j * count;
+
+                for (int s = start; s < end; s++) {
+                    out[o + s] = 0;
+                }
+
+                for (int i = 0; i < from; i++) {
+                    int a = i * count;
+                    int w = (offset + j * from + i) * count;
+
+                    kernels.multiplyAdd(in, a + start, weights, w + start, out, o + start, length);
+                }
+
+                kernels.activate(layerActivations[l], out, o + start, length);
+            }
+
+            in = out;
+        }
+    }
+}
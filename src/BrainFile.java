@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Versioned little-endian brain checkpoint:
+//   int magic "DINO", int version, int generation, double mutation rate,
+//   byte precision, byte layer count n, int[n] layer sizes, byte[n-1] activations,
+//   float[n-1] layer scales (int8 only), then the raw weights in stored precision.
+// Enum values are stored by ordinal, so new precisions/activations must be appended
+public class BrainFile {
+
+    public static final int MAGIC = 0x4F4E4944; // "DINO" read little-endian
+    public static final int VERSION = 1;
+
+    // Header of the smallest valid brain, two layers of one neuron and a single int8 weight
+    public static final int MIN_ENCODED_SIZE = 4 + 4 + 4 + 8 + 1 + 1 + 2 * 4 + 1 + 4 + 1;
+
+    public static int encodedSize(NeuralNetwork brain) {
+        int layerCount = brain.layers.length;
+        int size = 4 + 4 + 4 + 8 + 1 + 1 + layerCount * 4 + (layerCount - 1);
+        if (brain.precision == Precision.INT8) {
+            size += (layerCount - 1) * 4;
+        }
+        return size + brain.getWeightBytes();
+    }
+
+    // Writes at the buffer's position, which must be little-endian
+    public static void encode(NeuralNetwork brain, ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(brain.generationNumber);
+        out.putDouble(brain.mutationRate);
+        out.put((byte) brain.precision.ordinal());
+        out.put((byte) brain.layers.length);
+
+        for (int size : brain.layers) {
+            out.putInt(size);
+        }
+        for (int l = 0; l < brain.layers.length - 1; l++) {
+            out.put((byte) brain.getActivation(l).ordinal());
+        }
+
+        switch (brain.precision) {
+            case DOUBLE -> {
+                out.asDoubleBuffer().put(brain.weights);
+                out.position(out.position() + brain.weights.length * 8);
+            }
+            case FLOAT -> {
+                out.asFloatBuffer().put(brain.floatWeights);
+                out.position(out.position() + brain.floatWeights.length * 4);
+            }
+            case INT8 -> {
+                for (float scale : brain.layerScales) {
+                    out.putFloat(scale);
+                }
+                out.put(brain.quantizedWeights);
+            }
+        }
+    }
+
+    // Reads from the buffer's position, which must be little-endian
+    public static NeuralNetwork decode(ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a brain checkpoint");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported brain checkpoint version " + version);
+        }
+
+        int generation = in.getInt();
+        double mutationRate = in.getDouble();
+        Precision precision = Precision.values()[checkOrdinal(in.get(), Precision.values().length)];
+
+        int layerCount = in.get();
+        if (layerCount < 2) {
+            throw new IOException("Brain checkpoint has " + layerCount + " layers, needs at least 2");
+        }
+
+        int[] layers = new int[layerCount];
+        long weightCount = 0;
+        for (int l = 0; l < layers.length; l++) {
+            layers[l] = in.getInt();
+            if (layers[l] <= 0) {
+                throw new IOException("Brain checkpoint has a layer of size " + layers[l]);
+            }
+            if (l > 0) {
+                weightCount += (long) layers[l - 1] * layers[l];
+                if (weightCount > Integer.MAX_VALUE) {
+                    throw new IOException("Brain checkpoint has more weights than a network can hold");
+                }
+            }
+        }
+
+        // Checked before anything is allocated, so a corrupt size cannot ask for a huge network
+        long needed = (layerCount - 1) + weightCount * precision.bytesPerWeight;
+        if (precision == Precision.INT8) {
+            needed += (layerCount - 1) * 4L;
+        }
+        if (in.remaining() < needed) {
+            throw new IOException("Brain checkpoint is truncated, needs " + needed + " more bytes but has " + in.remaining());
+        }
+
+        NeuralNetwork brain = new NeuralNetwork(layers, precision);
+        brain.generationNumber = generation;
+        brain.mutationRate = mutationRate;
+
+        for (int l = 0; l < layers.length - 1; l++) {
+            brain.setActivation(l, Activation.values()[checkOrdinal(in.get(), Activation.values().length)]);
+        }
+
+        switch (precision) {
+            case DOUBLE -> {
+                in.asDoubleBuffer().get(brain.weights);
+                in.position(in.position() + brain.weights.length * 8);
+            }
+            case FLOAT -> {
+                in.asFloatBuffer().get(brain.floatWeights);
+                in.position(in.position() + brain.floatWeights.length * 4);
+            }
+            case INT8 -> {
+                for (int l = 0; l < brain.layerScales.length; l++) {
+                    brain.layerScales[l] = in.getFloat();
+                }
+                in.get(brain.quantizedWeights);
+            }
+        }
+
+        return brain;
+    }
+
+    private static int checkOrdinal(byte ordinal, int count) throws IOException {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IOException("Brain checkpoint uses an unknown type " + ordinal);
+        }
+        return ordinal;
+    }
+
+    // Single brains are a few KB, so these use one channel read/write instead of a mapping,
+    // which would keep the file locked on Windows until the buffer is collected
+    public static void write(NeuralNetwork brain, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(brain)).order(ByteOrder.LITTLE_ENDIAN);
+        encode(brain, buffer);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static NeuralNetwork read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return decode(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Brain checkpoint " + path + " is truncated", e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Writes brains and population snapshots on a background thread. Callers copy into one of
+// two reusable buffers and return straight away, if both are still being written the save
+// is skipped rather than stalling the simulation
+public class CheckpointService {
+
+    private static final int BUFFERS = 2;
+
+    private static class Job {
+        Path path;
+        NeuralNetwork brain;            // set for brain checkpoints
+        PopulationSnapshot snapshot;    // set for population snapshots
+        NeuralNetwork brainBuffer;
+        final PopulationSnapshot snapshotBuffer = new PopulationSnapshot();
+    }
+
+    private final BlockingQueue<Job> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Job> pending = new ArrayBlockingQueue<>(BUFFERS);
+    private final Thread writer;
+
+    // Write latency, updated by the writer thread
+    private volatile int written = 0;
+    private volatile int skipped = 0;
+    private volatile long lastNanos = 0;
+    private volatile long maxNanos = 0;
+    private volatile long totalNanos = 0;
+
+    public CheckpointService() {
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new Job());
+        }
+
+        writer = new Thread(this::run, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean saveBrain(NeuralNetwork brain, String filename) {
+        Job job = acquire();
+        if (job == null) return false;
+
+        if (job.brainBuffer == null) {
+            job.brainBuffer = brain.clone();
+        }
+        job.brainBuffer.copyFrom(brain);
+        job.brain = job.brainBuffer;
+        job.snapshot = null;
+        job.path = Path.of(filename);
+
+        pending.add(job);
+        return true;
+    }
+
+    public boolean saveSnapshot(DinoAgent[] population, String filename) {
+        Job job = acquire();
+        if (job == null) return false;
+
+        job.snapshotBuffer.capture(population);
+        job.snapshot = job.snapshotBuffer;
+        job.brain = null;
+        job.path = Path.of(filename);
+
+        pending.add(job);
+        return true;
+    }
+
+    private Job acquire() {
+        Job job = free.poll();
+        if (job == null) {
+            skipped++;
+            System.out.println("Checkpoint skipped, " + BUFFERS + " writes are still in progress");
+        }
+        return job;
+    }
+
+    // Blocks until every queued checkpoint is on disk
+    public void flush() {
+        Job[] jobs = new Job[BUFFERS];
+        try {
+            for (int i = 0; i < BUFFERS; i++) {
+                jobs[i] = free.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Job job : jobs) {
+            if (job != null) free.add(job);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Job job;
+            try {
+                job = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                write(job);
+                record(System.nanoTime() - start);
+
+                if (job.snapshot != null) {
+                    System.out.println("Population snapshot of generation " + job.snapshot.generation + " saved to " + job.path + " " + getStats());
+                } else {
+                    System.out.println("Neural network saved to " + job.path + " " + getStats());
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                // A mapped write raises InternalError when the disk fills, the writer has to survive it
+                e.printStackTrace();
+            } finally {
+                // Always handed back, or later saves are skipped and flush() waits forever
+                job.brain = null;
+                job.snapshot = null;
+                free.add(job);
+            }
+        }
+    }
+
+    // Written next to the target and renamed over it, so a crash mid-write never leaves a torn file
+    private static void write(Job job) throws IOException {
+        Path target = job.path.toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        if (job.snapshot != null) {
+            job.snapshot.write(temp);
+        } else {
+            BrainFile.write(job.brain, temp);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void record(long nanos) {
+        lastNanos = nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        totalNanos += nanos;
+        written++;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public String getStats() {
+        double mean = written > 0 ? totalNanos / 1e6 / written : 0;
+        return String.format("(%.2f ms, mean %.2f ms, max %.2f ms over %d writes, %d skipped)",
+                lastNanos / 1e6, mean, maxNanos / 1e6, written, skipped);
+    }
+}
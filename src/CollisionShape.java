@@ -0,0 +1,16 @@
+// Narrowphase shape of a sprite, all sized and centred by the sprite's box.
+// New shapes are appended here and given pair tests in Narrowphase
+public enum CollisionShape {
+    BOX,
+    ALPHA_MASK, // opaque pixels of the texture
+    TILEMAP,    // solid tiles of a Tilemap
+    CIRCLE,     // diameter is the shorter side of the box
+    CAPSULE;    // rounded box along its longer side
+
+    // Accepts the old mode names, "transparency" is ALPHA_MASK
+    public static CollisionShape parse(String name) {
+        String key = name.trim().toUpperCase();
+        if (key.equals("TRANSPARENCY")) return ALPHA_MASK;
+        return valueOf(key);
+    }
+}
@@ -1,131 +1,87 @@
-import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Random;
 
 public class DinoAgent extends Sprite {
 
     public NeuralNetwork brain;
 
     public double score = 0;
-    public double speed = -5;
     public boolean alive = true;
 
     private boolean isDucking = false;
 
-    private int minSpawnTime = 30;
-    private int maxSpawnTime = 120;
+    // Where the last obstacle check happened, the next one sweeps from here
+    private double checkedX = 0;
+    private double checkedY = 0;
 
-    private int spawnTimer = 0;
-    private int nextSpawnTime = 60; // initial delay
-    ArrayList<Sprite> cacti = new ArrayList<Sprite>();
+    final double[] inputs = new double[10];
+    final double[] outputs = new double[2];
+
+    // Column of this agent in the population's BatchInference, -1 when not packed
+    int batchSlot = -1;
 
     public DinoAgent(NeuralNetwork initBrain){
         brain = initBrain;
-        super("Dino.png", new Vector2(50,50), 1, new Vector2(0,0));
+        super(createWorld(), "Dino.png", new Vector2(50,50), 1, new Vector2(0,0));
         setPhysics(true);
-        setIgnoreListMode("whitelist");
-        addToIgnoreList(Main.floor);
-        setCollision(true, "box");
+        setCollisionLayers(Main.AGENT_LAYER, Main.GROUND_LAYER);
+        setGroundProbe(28);
+        setCollision(true, CollisionShape.BOX);
         brain.generationNumber = Main.generation;
     }
 
-    //Game Mechanics
-    private void jump(){
-        if (isGrounded() == 1) {
-            addForce(new Vector2(0, -17));
-        }
-    }
-
-    private void handleSpawning() {
-
-        spawnTimer++;
-
-        if (spawnTimer >= nextSpawnTime) {
-
-            spawnCactus();
-
-            spawnTimer = 0;
+    // Readies a finished agent for the next generation in place, keeping its world, body and
+    // sprite. Leaves it exactly as the constructor would with the new brain
+    public void reset(NeuralNetwork newBrain){
+        brain = newBrain;
+        brain.generationNumber = Main.generation;
 
-            nextSpawnTime = Main.random.nextInt(minSpawnTime, maxSpawnTime);
-        }
+        score = 0;
+        alive = true;
+        isDucking = false;
+        batchSlot = -1;
+
+        setTexture("Dino.png");
+        setSize(50,50);
+        GoTo(0,0);
+        setVelocity(0,0);
+        savePreviousPosition();
+        clearContacts();
+        checkedX = 0;
+        checkedY = 0;
+
+        setVisible(true);
+        setPhysics(true);
     }
 
-    private void handleMoving(){
-        for (Sprite cactus : cacti){
-            if (cactus.isDestroyed()) continue;
-
-            cactus.Move(new Vector2(speed,0));
-
-            if (cactus.getPosition().x < -410){
-                cactus.Destroy();
-            }
-        }
-        cacti.removeIf(Sprite::isDestroyed);
+    // Stops the agent where it is. It stays in its world so the next generation can reset it
+    public void die(){
+        alive = false;
+        setVisible(false);
+        setPhysics(false);
     }
 
-    public int isGrounded(){
-        ArrayList<Sprite> ignoreList = new ArrayList<>();
-        ignoreList.add(this);
-        ignoreList.add(Main.floor);
-
-        Raycast groundCheck = new Raycast(
-                getPosition(),
-                new Vector2(0,1),
-                28,
-                ignoreList,
-                "whitelist"
-        );
-
-        if (groundCheck.Hit){
-            return 1;
-        }
-        else {
-            return 0;
-        }
-
+    // Each agent simulates in its own world that only shares the floor
+    private static World createWorld(){
+        World agentWorld = new World();
+        agentWorld.share(Main.floor);
+        Main.addWorld(agentWorld);
+        return agentWorld;
     }
 
-    //Getting Input Values
-    private ArrayList<Sprite> getCactiInFront() {
-
-        ArrayList<Sprite> front = new ArrayList<>();
-
-        for (Sprite cactus : cacti) {
-            if (!cactus.isDestroyed() &&
-                    cactus.getPosition().x > getPosition().x) {
-
-                front.add(cactus);
-            }
-        }
-
-        front.sort((a, b) -> Double.compare(a.getPosition().x, b.getPosition().x));
-
-        return front;
+    @Override
+    public void OnDestroy() {
+        super.OnDestroy();
+        world.dispose();
     }
 
-    public Sprite spawnCactus(){
-        String spritePath = "Cactus.png";
-        Vector2 cactusSize = new Vector2(30,60);
-        double yPos = 150;
-        if (Main.random.nextInt(0,5) == 1){
-            spritePath = "bird.png";
-            yPos = Main.random.nextDouble(70,130);
-            cactusSize = new Vector2(60,40);
-        }
-
-        Sprite cactus = new Sprite(spritePath, cactusSize, 100, new Vector2(410,yPos));
-        cactus.setIgnoreListMode("whitelist");
-        cacti.add(cactus);
-
-        cactus.setCollision(true, "box");
-
-        if (!Main.showLesserDinos && Main.currentBest != this){
-            cactus.setVisible(false);
+    //Game Mechanics
+    private void jump(){
+        if (isGrounded()) {
+            addForce(0, -17);
         }
-
-        return cactus;
     }
 
+    //Getting Input Values (fills and returns this agent's input buffer)
     public double[] getInputs(){
 
         double distance1 = 1.0; // default normalized
@@ -134,66 +90,65 @@ public class DinoAgent extends Sprite {
         double height2 = 0;
         double between = 1.0;
 
-        ArrayList<Sprite> front = getCactiInFront();
+        ObstacleCourse course = Main.course;
+        int first = course.firstAhead(getX());
 
-        if (front.size() > 0){
+        if (first < course.size()){
 
-            distance1 = (front.get(0).getPosition().x - getPosition().x) / 410.0;
-            height1 = (130 - front.get(0).getPosition().y) / (130 - 70);
-            if (front.size() > 1){
+            distance1 = (course.getX(first) - getX()) / 410.0;
+            height1 = (130 - course.getY(first)) / (130 - 70);
+            if (first + 1 < course.size()){
 
-                distance2 = (front.get(1).getPosition().x - getPosition().x) / 410.0;
-                height2 = (130 - front.get(1).getPosition().y) / (130 - 70);
+                distance2 = (course.getX(first + 1) - getX()) / 410.0;
+                height2 = (130 - course.getY(first + 1)) / (130 - 70);
 
-                between = (front.get(1).getPosition().x -
-                        front.get(0).getPosition().x) / 410.0;
+                between = (course.getX(first + 1) -
+                        course.getX(first)) / 410.0;
             }
         }
 
-        return new double[]{
-                (getPosition().y - 6.0) / (142.0 - 6.0),//Agent's vertical Position (normalized)
-                (getVelocity().y + 15.0) / 32.0,//Agent's vertical Velocity (normalized)
-                distance1,//distance from closest cacti (normalized)
-                distance2,//distance to 2nd cacti (normalized)
-                isGrounded(),//is touching floor?
-                (speed + 15.0) / 10.0,//movement speed (normalized)
-                between,//distance between cacti (normalized)
-                height1,//closest cactus y position (normalized)
-                height2,//2nd cactus y position(normalized)
-                1.0 // bias
-        };
+        inputs[0] = (getY() - 6.0) / (142.0 - 6.0);//Agent's vertical Position (normalized)
+        inputs[1] = (getVelocityY() + 15.0) / 32.0;//Agent's vertical Velocity (normalized)
+        inputs[2] = distance1;//distance from closest cacti (normalized)
+        inputs[3] = distance2;//distance to 2nd cacti (normalized)
+        inputs[4] = isGrounded() ? 1 : 0;//is touching floor?
+        inputs[5] = (course.speed + 15.0) / 10.0;//movement speed (normalized)
+        inputs[6] = between;//distance between cacti (normalized)
+        inputs[7] = height1;//closest cactus y position (normalized)
+        inputs[8] = height2;//2nd cactus y position(normalized)
+        inputs[9] = 1.0; // bias
+
+        return inputs;
     }
 
     public void update(double deltaTime){
-        for (Sprite cactus : cacti){
-            if (isCollidingAt(getPosition().x, getPosition().y, cactus)){
-                setVisible(false);
-                for (Sprite cactus1 : cacti){
-                    if (isCollidingAt(getPosition().x, getPosition().y, cactus)){
-                        cactus1.Destroy();
-                    }
-                }
-                Destroy();
-                alive = false;
-            }
+        if (sense(deltaTime)){
+            act(brain.forward(inputs));
         }
+    }
 
-        if (!alive){
-            return;
+    // First half of a tick: collisions, scoring and inputs. Returns false once the agent is dead
+    public boolean sense(double deltaTime){
+        double x = getX();
+        double y = getY();
+        AlphaMask mask = ObstacleCourse.pixelPerfect ? getAlphaMask() : null;
+        if (alive && Main.course.collides(x, y, getWidth(), getHeight(), mask, checkedX, checkedY)){
+            die();
         }
+        checkedX = x;
+        checkedY = y;
 
-        speed -= 0.25 * deltaTime;
-        speed = Math.max(speed, -15);
-        if (speed < -10){
-            minSpawnTime = 15;
+        if (!alive){
+            return false;
         }
 
         score+=deltaTime;
-        if (Main.highScore < score){
-            Main.highScore = score;
-        }
-        double[] inputs = getInputs();
-        double[] outputs = brain.forward(inputs);
+        getInputs();
+        return true;
+    }
+
+    // Second half of a tick: turns the brain's outputs into movement
+    public void act(double[] outputs){
 
         if (Main.manualOvveride){
             if(Main.window.upArrowHeld){
@@ -220,32 +175,29 @@ public class DinoAgent extends Sprite {
         boolean willDuck = outputs[1] > 0;
         if (willDuck){
             isDucking = true;
-            score -= 0.01;
+            score -= 0.01 * SimulationLoop.stepScale();
         }
         else {
             isDucking = false;
         }
 
         if (isDucking){
-            if (isGrounded() == 1){
+            if (isGrounded()){
                 setTexture("duckDino.png");
                 setSize(50,20);
-                GoTo(new Vector2(0,165));
+                GoTo(0,165);
             }
             else{
-                addForce(new Vector2(0, 2));
+                addForce(0, 2 * SimulationLoop.stepScale());
             }
         }
         else{
-            setTexture("dino.png");
+            setTexture("Dino.png");
             setSize(50,50);
-            if (isGrounded() == 1){
-                GoTo(new Vector2(0,150));
+            if (isGrounded()){
+                GoTo(0,150);
             }
         }
-
-        handleSpawning();
-        handleMoving();
     }
 
     //Fitness
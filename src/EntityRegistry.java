@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+// Objects of one world. Live objects are packed at [0, size()) for iteration and removed by
+// moving the last one into the gap, while each also holds a slot that never moves. A handle
+// is the slot plus the slot's generation, which goes up on every removal, so a handle kept
+// past its object's removal stops resolving even once the slot is reused
+public class EntityRegistry {
+
+    public static final long NO_HANDLE = -1;
+
+    private GameObject[] dense;
+    private int[] denseSlot;     // slot of the object at each dense index
+    private int count = 0;
+
+    private int[] slotDense;     // dense index of each slot, -1 while the slot is free
+    private int[] generations;
+    private int slots = 0;
+
+    private int[] freeSlots;
+    private int freeCount = 0;
+
+    public EntityRegistry() {
+        this(16);
+    }
+
+    public EntityRegistry(int capacity) {
+        dense = new GameObject[capacity];
+        denseSlot = new int[capacity];
+        slotDense = new int[capacity];
+        generations = new int[capacity];
+        freeSlots = new int[capacity];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Live object at a dense index, indices change as objects are removed
+    public GameObject get(int index) {
+        return dense[index];
+    }
+
+    public long add(GameObject object) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slots == slotDense.length) {
+                growSlots(slots * 2);
+            }
+            slot = slots++;
+        }
+
+        if (count == dense.length) {
+            dense = Arrays.copyOf(dense, count * 2);
+            denseSlot = Arrays.copyOf(denseSlot, count * 2);
+        }
+
+        dense[count] = object;
+        denseSlot[count] = slot;
+        slotDense[slot] = count;
+        count++;
+
+        return handle(slot, generations[slot]);
+    }
+
+    // Removes the object behind the handle, returns false if it was already gone
+    public boolean remove(long handle) {
+        if (!isLive(handle)) return false;
+
+        int slot = slot(handle);
+        int index = slotDense[slot];
+        int last = --count;
+
+        if (index != last) {
+            dense[index] = dense[last];
+            denseSlot[index] = denseSlot[last];
+            slotDense[denseSlot[index]] = index;
+        }
+        dense[last] = null;
+
+        slotDense[slot] = -1;
+        generations[slot]++;
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    // The object the handle was issued for, or null once it has been removed
+    public GameObject resolve(long handle) {
+        if (!isLive(handle)) return null;
+        return dense[slotDense[slot(handle)]];
+    }
+
+    public boolean isLive(long handle) {
+        if (handle == NO_HANDLE) return false;
+
+        int slot = slot(handle);
+        return slot < slots && slotDense[slot] >= 0 && generations[slot] == generation(handle);
+    }
+
+    private void growSlots(int capacity) {
+        slotDense = Arrays.copyOf(slotDense, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+
+    public static long handle(int slot, int generation) {
+        return ((long) generation << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    public static int slot(long handle) {
+        return (int) handle;
+    }
+
+    public static int generation(long handle) {
+        return (int) (handle >>> 32);
+    }
+}
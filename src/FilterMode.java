@@ -0,0 +1,9 @@
+// How a sprite's collision exception set is applied
+public enum FilterMode {
+    BLACKLIST, // collide with everything except the listed sprites
+    WHITELIST; // collide with the listed sprites only
+
+    public static FilterMode parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -1,53 +1,178 @@
+import java.util.concurrent.ForkJoinTask;
+
 public class GameObject {
 
-    Vector2 Position = new Vector2(0,0);
-    Vector2 Velocity = new Vector2(0,0);
+    // This object's slot in its world's PhysicsStore, the store owns position, velocity and size
+    PhysicsStore bodies;
+    int body;
+    private PhysicsStore detached; // single store kept after removal, reused if the object is removed again
+
+    World world;
+    long handle = EntityRegistry.NO_HANDLE; // this object's entry in its world's registry
 
-    boolean usePhysics = false;
     private boolean destroyed = false;
 
+    // Contact state from the last physics step, read instead of querying the world again
+    boolean grounded = false;
+    final Vector2 contactNormal = new Vector2(0,0);
+    Sprite contactSprite = null;
+
     GameObject(){
-        Main.objects.add(this);
+        this(Main.world);
+    }
+
+    GameObject(World ownerWorld){
+        // Worlds, registries and the sprite lists are only safe on the simulation thread,
+        // population workers may move and retexture their agent but never create objects
+        if (ForkJoinTask.inForkJoinPool()) {
+            throw new IllegalStateException("Game objects must be created on the simulation thread, not by a population worker");
+        }
+        world = ownerWorld;
+        bodies = world.bodies;
+        body = bodies.add(this);
+        handle = world.add(this);
     }
 
     public void GoTo(double xPos, double yPos){
-        Position.setX(xPos);
-        Position.setY(yPos);
+        bodies.x[body] = xPos;
+        bodies.y[body] = yPos;
     }
 
     public void GoTo(Vector2 newPos){
-        Position.setX(newPos.x);
-        Position.setY(newPos.y);
+        GoTo(newPos.x, newPos.y);
     }
 
     public void Move(Vector2 direction){
-        Position.x += direction.x;
-        Position.y += direction.y;
+        Move(direction.x, direction.y);
+    }
+
+    public void Move(double dx, double dy){
+        bodies.x[body] += dx;
+        bodies.y[body] += dy;
     }
 
     public void setVelocity(Vector2 newVel){
-        Velocity.setX(newVel.x);
-        Velocity.setY(newVel.y);
+        setVelocity(newVel.x, newVel.y);
+    }
+
+    public void setVelocity(double vx, double vy){
+        bodies.velocityX[body] = vx;
+        bodies.velocityY[body] = vy;
     }
 
     public void addForce(Vector2 force){
-        Velocity.Add(force);
+        addForce(force.x, force.y);
+    }
+
+    public void addForce(double fx, double fy){
+        bodies.velocityX[body] += fx;
+        bodies.velocityY[body] += fy;
     }
 
     public void setPhysics(boolean newBool){
-        usePhysics = newBool;
+        setFlag(PhysicsStore.PHYSICS, newBool);
     }
 
     public boolean usesPhysics(){
-        return usePhysics;
+        return (bodies.flags[body] & PhysicsStore.PHYSICS) != 0;
+    }
+
+    void setFlag(byte flag, boolean enabled){
+        if (enabled) bodies.flags[body] |= flag;
+        else bodies.flags[body] &= (byte) ~flag;
+    }
+
+    public double getX(){
+        return bodies.x[body];
+    }
+
+    public double getY(){
+        return bodies.y[body];
+    }
+
+    public double getVelocityX(){
+        return bodies.velocityX[body];
+    }
+
+    public double getVelocityY(){
+        return bodies.velocityY[body];
     }
 
+    // The Vector2 getters return copies, safe to keep or change from any thread. Writing to a
+    // copy does not move the body, use GoTo, Move or setVelocity. Hot paths read getX and friends
     public Vector2 getVelocity(){
-        return Velocity;
+        return new Vector2(bodies.velocityX[body], bodies.velocityY[body]);
+    }
+
+    public World getWorld(){
+        return world;
+    }
+
+    public boolean isGrounded(){
+        return grounded;
+    }
+
+    // Normal of the surface that last blocked this body, zero when nothing did
+    public Vector2 getContactNormal(){
+        return contactNormal;
+    }
+
+    public Sprite getContactSprite(){
+        return contactSprite;
+    }
+
+    void clearContacts(){
+        grounded = false;
+        contactNormal.setX(0);
+        contactNormal.setY(0);
+        contactSprite = null;
+    }
+
+    void setContact(Sprite other, double normalX, double normalY){
+        contactSprite = other;
+        contactNormal.setX(normalX);
+        contactNormal.setY(normalY);
+        if (normalY < 0) grounded = true;
+    }
+
+    // Called by the physics step once the body has moved
+    void updateContacts(){
     }
 
     public Vector2 getPosition(){
-        return Position;
+        return new Vector2(bodies.x[body], bodies.y[body]);
+    }
+
+    // Position at the start of the current tick, used to interpolate rendering
+    public double getPreviousX(){
+        return bodies.previousX[body];
+    }
+
+    public double getPreviousY(){
+        return bodies.previousY[body];
+    }
+
+    public Vector2 getPreviousPosition(){
+        return new Vector2(bodies.previousX[body], bodies.previousY[body]);
+    }
+
+    public void savePreviousPosition(){
+        bodies.previousX[body] = bodies.x[body];
+        bodies.previousY[body] = bodies.y[body];
+    }
+
+    // Moves the body out of its world's store into one of its own, so it can still be read
+    void detachBody(){
+        PhysicsStore own = bodies.detach(body, detached);
+        detached = own;
+        bodies.remove(body);
+        bodies = own;
+        body = 0;
+    }
+
+    // Stays valid for lookups through World.resolve until the object is cleaned up
+    public long getHandle(){
+        return handle;
     }
 
     public boolean isDestroyed(){
@@ -55,7 +180,9 @@ public class GameObject {
     }
 
     public void Destroy(){
+        if (destroyed) return;
         destroyed = true;
+        world.queueDestroyed(this);
     }
 
     // Called during cleanup phase
@@ -11,22 +11,24 @@ public class GamePanel extends JPanel {
         setDoubleBuffered(true);
     }
 
-    double gravityScale = 1;
+    double renderAlpha = 1;
 
-    public void setGravity(double newGravity){
-        gravityScale = newGravity;
+    public void setRenderAlpha(double newAlpha){
+        renderAlpha = newAlpha;
     }
 
-    private List<Sprite> getRenderSnapshot() {
-        synchronized (Main.sprites) {
-            return new ArrayList<>(Main.sprites);
-        }
+    public void setGravity(double newGravity){
+        Physics.setGravity(newGravity);
     }
 
-    private List<GameObject> getPhysicsSnapshot() {
-        synchronized (Main.objects) {
-            return new ArrayList<>(Main.objects);
+    private List<Sprite> getRenderSnapshot() {
+        List<Sprite> snapshot = new ArrayList<>();
+        synchronized (Main.worlds) {
+            for (World world : Main.worlds) {
+                world.collectSprites(snapshot);
+            }
         }
+        return snapshot;
     }
 
     private List<GuiObject> getGuiSnapshot() {
@@ -35,28 +37,10 @@ public class GamePanel extends JPanel {
         }
     }
 
-    private void calculatePhysics(){
-
-        List<GameObject> objects = getPhysicsSnapshot();
-
-        for (GameObject object : objects) {
-
-            if (object == null) continue;
-
-            if (object.usesPhysics()){
-
-                object.Move(object.Velocity);
-
-                if (Math.abs(gravityScale) > 0){
-                    object.addForce(new Vector2(0, gravityScale));
-                }
-            }
-        }
-    }
-
     private void drawSprites(Graphics g) {
 
-        Vector2 camPos = Main.cam.getPosition();
+        double camX = Main.cam.getX();
+        double camY = Main.cam.getY();
         List<Sprite> sprites = getRenderSnapshot();
 
         sprites.sort(Comparator.comparingInt(Sprite::GetZIndex));
@@ -69,18 +53,24 @@ public class GamePanel extends JPanel {
             BufferedImage img = sprite.GetImage();
             if (img == null) continue;
 
-            Vector2 worldPos = sprite.getPosition();
-            Vector2 size = sprite.GetSize();
+            double previousX = sprite.getPreviousX();
+            double previousY = sprite.getPreviousY();
+            double width = sprite.getWidth();
+            double height = sprite.getHeight();
+
+            // Interpolate between the last two ticks so rendering is smooth at any tick rate
+            double drawX = previousX + (sprite.getX() - previousX) * renderAlpha;
+            double drawY = previousY + (sprite.getY() - previousY) * renderAlpha;
 
-            double screenX = worldPos.x - camPos.x + getWidth() / 2.0;
-            double screenY = worldPos.y - camPos.y + getHeight() / 2.0;
+            double screenX = drawX - camX + getWidth() / 2.0;
+            double screenY = drawY - camY + getHeight() / 2.0;
 
             g.drawImage(
                     img,
-                    (int)(screenX - size.x / 2),
-                    (int)(screenY - size.y / 2),
-                    (int)size.x,
-                    (int)size.y,
+                    (int)(screenX - width / 2),
+                    (int)(screenY - height / 2),
+                    (int)width,
+                    (int)height,
                     this
             );
         }
@@ -116,7 +106,6 @@ public class GamePanel extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        calculatePhysics();
         drawSprites(g);
         drawGUI(g);
     }
@@ -12,11 +12,15 @@ public class GameWindow extends JFrame {
 
     private int fps;
     private int frames;
+    private int ticks;
     private long fpsTimer = System.nanoTime();
 
     public int FPS = 0;
+    public int TPS = 0;
     public int frameTime = 16;
 
+    public SimulationLoop loop = new SimulationLoop();
+
     public boolean upHeld = false;
     public boolean downHeld = false;
     public boolean leftHeld = false;
@@ -65,17 +69,26 @@ public class GameWindow extends JFrame {
                 //keybinds
                 if (e.getKeyCode() == KeyEvent.VK_CLOSE_BRACKET) {
                     System.out.println("saving current weights...");
-                    Main.saveBrain(Main.population[0].brain, "saved_network.json");
+                    SimulationLoop.post(() -> {
+                        if (Main.population == null) {
+                            System.out.println("No population to save yet");
+                            return;
+                        }
+                        Main.saveBrain(Main.population[0].brain, "saved_network.brain");
+                    });
                 }
                 if (e.getKeyCode() == KeyEvent.VK_OPEN_BRACKET && !Main.generationRunning) {
-                    NeuralNetwork loadedBrain = Main.loadBrain("saved_network.json");
-                    System.out.println("Starting training from saved brain...");
-                    Main.generation = loadedBrain.generationNumber;
-                    Main.startGeneration(loadedBrain);
+                    SimulationLoop.post(() -> {
+                        NeuralNetwork loadedBrain = Main.loadBrain("saved_network.brain");
+                        if (loadedBrain == null) return;
+                        System.out.println("Starting training from saved brain...");
+                        Main.generation = loadedBrain.generationNumber;
+                        Main.startGeneration(loadedBrain);
+                    });
                 }
                 if (e.getKeyCode() == KeyEvent.VK_P && !Main.generationRunning) {
                     System.out.println("Starting training...");
-                    Main.startGeneration(new NeuralNetwork(10, 16, 16, 16, 16, 2));
+                    SimulationLoop.post(() -> Main.startGeneration(new NeuralNetwork(10, 16, 16, 16, 16, 2)));
                 }
                 if (e.getKeyCode() == KeyEvent.VK_O && Main.generationRunning) {
                     System.out.println("Toggled lesser agent visibility.");
@@ -83,13 +96,18 @@ public class GameWindow extends JFrame {
                 }
                 if (e.getKeyCode() == KeyEvent.VK_I && !Main.generationRunning) {
                     System.out.println("Starting manual mode...");
-                    Main.populationSize = 1;
-                    Main.manualOvveride = true;
-                    Main.startGeneration(new NeuralNetwork(10, 16, 16, 16, 16, 2));
+                    SimulationLoop.post(() -> {
+                        Main.populationSize = 1;
+                        Main.manualOvveride = true;
+                        Main.startGeneration(new NeuralNetwork(10, 16, 16, 16, 16, 2));
+                    });
                 }
                 if (e.getKeyCode() == KeyEvent.VK_F && Main.generationRunning) {
                     System.out.println("Teleported Camera to best dino");
-                    Main.cam.GoTo(Main.currentBest.getPosition());
+                    SimulationLoop.post(() -> {
+                        if (Main.currentBest == null) return;
+                        Main.cam.GoTo(Main.currentBest.getX(), Main.currentBest.getY());
+                    });
                 }
                 if (e.getKeyCode() == KeyEvent.VK_0) {
                     frameTime++;
@@ -101,6 +119,16 @@ public class GameWindow extends JFrame {
                     System.out.println("FrameTime is now: " + frameTime);
                 }
 
+                if (e.getKeyCode() == KeyEvent.VK_EQUALS) {
+                    loop.timeScale = Math.min(loop.timeScale * 2, 1024);
+                    System.out.println("Simulation speed is now: " + loop.timeScale + "x");
+                }
+
+                if (e.getKeyCode() == KeyEvent.VK_MINUS) {
+                    loop.timeScale = Math.max(loop.timeScale / 2, 0.125);
+                    System.out.println("Simulation speed is now: " + loop.timeScale + "x");
+                }
+
             }
 
             @Override
@@ -145,6 +173,7 @@ public class GameWindow extends JFrame {
 
                 if (numberOfLoops > 10){
                     numberOfLoops = 100;
+                    ticks += loop.advance(deltaTimeSeconds);
                     Main.Update(deltaTimeSeconds);
                     Update(deltaTimeSeconds);
                 }
@@ -162,6 +191,7 @@ public class GameWindow extends JFrame {
     }
 
     public void Update(double deltaTime) {
+        panel.setRenderAlpha(loop.getAlpha());
         panel.repaint();
         frames++;
         long now = System.nanoTime();
@@ -171,6 +201,8 @@ public class GameWindow extends JFrame {
             frames = 0;
             fpsTimer = now;
             FPS = fps;
+            TPS = ticks;
+            ticks = 0;
             //System.out.println("FPS: " + fps);
         }
     }
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class HeadlessTrainer {
+
+    public static int maxGenerations = 0; // 0 = run until killed
+    public static int checkpointEvery = 10;
+    public static String checkpointFile = "saved_network.brain";
+    public static String loadFile = null;
+    public static Activation activation = null; // null keeps the brain's own
+    public static Precision precision = null;
+    public static int compareTrials = 0;
+    public static String resumeFile = null;
+    public static int allocationCheckTicks = 0;
+    public static boolean checkActivations = false;
+
+    // Runs generations back to back with no window, checkpointing the best brain to disk
+    public static void run(String[] args){
+        Main.snapshotEvery = 25;
+        parseArgs(args);
+
+        if (checkActivations) {
+            if (!ActivationCheck.run()) System.exit(1);
+            return;
+        }
+
+        NeuralNetwork base;
+        if (loadFile != null) {
+            base = Main.loadBrain(loadFile);
+            if (base == null) return;
+            Main.generation = base.generationNumber;
+        } else {
+            base = new NeuralNetwork(10, 16, 16, 16, 16, 2);
+        }
+
+        if (activation != null) {
+            base.setActivation(activation);
+        }
+
+        if (compareTrials > 0) {
+            PrecisionBenchmark.run(base, compareTrials, 20_000);
+            return;
+        }
+
+        if (precision != null) {
+            base.setPrecision(precision);
+        }
+
+        if (resumeFile != null) {
+            try {
+                PopulationSnapshot snapshot = PopulationSnapshot.read(Path.of(resumeFile));
+                System.out.println("Resuming from generation " + snapshot.generation + " with " + snapshot.brains.length + " agents from " + resumeFile);
+                Main.resume(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        } else {
+            Main.startGeneration(base);
+        }
+
+        if (allocationCheckTicks > 0) {
+            // Forked evaluation tasks allocate on their own, so the whole tick runs on this thread
+            Main.workerThreads = 1;
+            boolean clean = AllocationCheck.run(2_000, allocationCheckTicks);
+            if (!clean) System.exit(1);
+            return;
+        }
+
+        System.out.println("Headless training: population " + Main.population.length + ", " + Main.workerThreads + " threads, checkpoint every " + checkpointEvery + " generations to " + checkpointFile
+                + ", population snapshot every " + Main.snapshotEvery + " generations to " + Main.snapshotFile);
+
+        int startGeneration = Main.generation;
+        int lastGeneration = Main.generation;
+        long startTime = System.nanoTime();
+
+        while (maxGenerations <= 0 || Main.generation - startGeneration < maxGenerations) {
+
+            SimulationLoop.tick();
+
+            if (Main.generation != lastGeneration) {
+                lastGeneration = Main.generation;
+
+                double hours = (System.nanoTime() - startTime) / 3_600_000_000_000.0;
+                int finished = Main.generation - startGeneration;
+                System.out.println("Generation: " + (Main.generation - 1) + " Best: " + Math.round(Main.lastGenerationBest) + " HighScore: " + Math.round(Main.highScore) + " Generations/hour: " + Math.round(finished / hours));
+
+                if (checkpointEvery > 0 && finished % checkpointEvery == 0) {
+                    Main.saveBrain(Main.lastGenerationBestBrain, checkpointFile);
+                }
+            }
+        }
+
+        // Waits for a free buffer so the final checkpoint is never skipped
+        Main.checkpoints.flush();
+        Main.saveBrain(Main.lastGenerationBestBrain, checkpointFile);
+        Main.checkpoints.flush();
+    }
+
+    private static void parseArgs(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generations" -> maxGenerations = Integer.parseInt(args[++i]);
+                case "--population" -> Main.populationSize = Integer.parseInt(args[++i]);
+                case "--checkpoint-every" -> checkpointEvery = Integer.parseInt(args[++i]);
+                case "--checkpoint" -> checkpointFile = args[++i];
+                case "--load" -> loadFile = args[++i];
+                case "--threads" -> Main.workerThreads = Integer.parseInt(args[++i]);
+                case "--no-batch" -> PopulationEvaluator.batchInference = false;
+                case "--precision" -> precision = Precision.parse(args[++i]);
+                case "--compare-precision" -> compareTrials = Integer.parseInt(args[++i]);
+                case "--activation" -> activation = Activation.parse(args[++i]);
+                case "--seed" -> Main.random = new Rng(Long.parseLong(args[++i]));
+                case "--resume" -> resumeFile = args[++i];
+                case "--snapshot" -> Main.snapshotFile = args[++i];
+                case "--snapshot-every" -> Main.snapshotEvery = Integer.parseInt(args[++i]);
+                case "--tick" -> SimulationLoop.tickSeconds = Double.parseDouble(args[++i]);
+                case "--pixel-collision" -> ObstacleCourse.pixelPerfect = true;
+                case "--alloc-check" -> allocationCheckTicks = Integer.parseInt(args[++i]);
+                case "--check-activations" -> checkActivations = true;
+                default -> { }
+            }
+        }
+    }
+}
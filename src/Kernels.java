@@ -0,0 +1,27 @@
+// Inner loops of the networks, picked once at startup
+public abstract class Kernels {
+
+    public static Kernels active = new ScalarKernels();
+
+    // sum of a[aOffset + i] * b[bOffset + i] for i < length
+    public abstract double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    // out[outOffset + i] += a[aOffset + i] * b[bOffset + i] for i < length
+    public abstract void multiplyAdd(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    // Applies the activation in place
+    public abstract void activate(Activation activation, double[] values, int offset, int length);
+
+    // Switches to the Vector API kernels, needs --add-modules jdk.incubator.vector at runtime
+    public static boolean useVector() {
+        try {
+            active = new VectorKernels();
+            System.out.println("Using Vector API kernels (" + VectorKernels.describe() + ")");
+            return true;
+        } catch (LinkageError e) {
+            System.out.println("Vector API not available, using scalar kernels");
+            active = new ScalarKernels();
+            return false;
+        }
+    }
+}
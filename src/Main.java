@@ -1,8 +1,9 @@
 import java.awt.*;
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.List;
 
 public class Main {
 
@@ -10,13 +11,18 @@ public class Main {
     public static GameObject cam;
     public static Sprite floor;
 
+    // Collision layers, agents only collide with the ground
+    public static final int GROUND_LAYER = 1 << 1;
+    public static final int AGENT_LAYER = 1 << 2;
+
     public static TextLabel infoBox;
 
-    public static ArrayList<GameObject> objects = new ArrayList<>();
-    public static ArrayList<Sprite> sprites = new ArrayList<>();
+    // Default world for the floor, camera and GUI, agents each get their own
+    public static World world = new World();
+    public static final ArrayList<World> worlds = new ArrayList<>(List.of(world));
     public static ArrayList<GuiObject> guiObjects = new ArrayList<>();
 
-    public static Random random = new Random();
+    public static Rng random = new Rng();
 
     public static int populationSize = 100;
     public static int elitePercent = 1;
@@ -28,107 +34,207 @@ public class Main {
 
     public static ArrayList<Sprite> DinoSprites;
     public static DinoAgent[] population;
+    public static ObstacleCourse course;
     public static boolean generationRunning = false;
+    public static boolean headless = false;
+    public static int liveAgents = 0;
+    public static int workerThreads = Runtime.getRuntime().availableProcessors();
+    public static PopulationEvaluator evaluator;
+
+    public static int snapshotEvery = 0; // generations between population snapshots, 0 = off
+    public static String snapshotFile = "population.snapshot";
+    public static final CheckpointService checkpoints = new CheckpointService();
+    public static double lastGenerationBest = 0;
+    public static NeuralNetwork lastGenerationBestBrain;
+    private static NeuralNetwork[] spareBrains; // brains evolve writes the next generation into
 
     public static void startGeneration(NeuralNetwork base) {
         if (population == null) {
             population = createPopulationFromBrain(base);
         }
+        newCourse();
 
         generationRunning = true;
     }
 
     public static void nextGeneration() {
+        lastGenerationBest = Double.NEGATIVE_INFINITY;
+        DinoAgent best = null;
+        for (DinoAgent agent : population) {
+            if (agent.fitness() > lastGenerationBest) {
+                lastGenerationBest = agent.fitness();
+                best = agent;
+            }
+        }
+
+        // Copied, evolve hands the agent's own brain on to another agent
+        if (best != null) {
+            if (lastGenerationBestBrain == null) {
+                lastGenerationBestBrain = best.brain.clone();
+            } else {
+                lastGenerationBestBrain.copyFrom(best.brain);
+            }
+        }
+
+        // Taken before evolve so a resumed run replays the same random draws from here
+        if (snapshotEvery > 0 && generation % snapshotEvery == 0) {
+            checkpoints.saveSnapshot(population, snapshotFile);
+        }
+
         generation++;
         population = evolve(population);
+        if (evaluator != null) {
+            evaluator.invalidate();
+        }
+        newCourse();
         generationRunning = true;
     }
 
+    // Every generation runs one shared course so fitness is compared on equal terms
+    private static void newCourse() {
+        if (course != null) {
+            course.dispose();
+        }
+        course = new ObstacleCourse(random.nextLong());
+    }
+
     public static void main(String[] args){
+        if (Arrays.asList(args).contains("--simd")){
+            Kernels.useVector();
+        }
+
+        if (Arrays.asList(args).contains("--headless")){
+            headless = true;
+            System.setProperty("java.awt.headless", "true");
+            createFloor();
+            HeadlessTrainer.run(args);
+            return;
+        }
+
         window = new GameWindow();
         cam = new GameObject();
         infoBox = new TextLabel(" ");
         infoBox.setTextColor(Color.BLACK);
 
-        floor = new Sprite("Square.png", new Vector2(1000,50), 100, new Vector2(0,200));
+        createFloor();
+    }
+
+    private static void createFloor(){
+        floor = new Sprite("square.png", new Vector2(1000,50), 100, new Vector2(0,200));
         floor.setCollision(true);
+        floor.setCollisionLayers(GROUND_LAYER, Sprite.ALL_LAYERS);
     }
 
+    // Called once per rendered frame, simulation happens in Step
     public static void Update(double deltaTime){
 
         if (generationRunning) {
-
-            int alive = 0;
-
-            for (DinoAgent agent : population) {
-                agent.update(deltaTime);
-                if (agent.alive) alive++;
-            }
-
-            if (alive == 0) {
-                nextGeneration();
-            }
-            infoBox.setText("Generation: "+generation+" HighScore: "+Math.round(highScore)+" LiveAgents: "+alive+" FPS: "+window.FPS+" LesserAgentsVisible: "+showLesserDinos);
-            updateDinoSprites(population);
+            infoBox.setText("Generation: "+generation+" HighScore: "+Math.round(highScore)+" LiveAgents: "+liveAgents+" FPS: "+window.FPS+" TPS: "+window.TPS+" Speed: "+window.loop.timeScale+"x LesserAgentsVisible: "+showLesserDinos);
         }
 
-        Vector2 direction = new Vector2(0,0);
+        double dx = 0;
+        double dy = 0;
 
         if (window.upHeld){
-            direction.y -= 5;
+            dy -= 5;
         }
 
         if (window.downHeld){
-            direction.y += 5;
+            dy += 5;
         }
 
         if (window.leftHeld){
-            direction.x -= 5;
+            dx -= 5;
         }
 
         if (window.rightHeld){
-            direction.x += 5;
+            dx += 5;
         }
 
-        direction.Unit();
-        cam.Move(direction);
+        cam.Move(dx, dy);
+    }
+
+    // Advances the running generation by one fixed tick, returns the number of live agents
+    public static int Step(double deltaTime){
+
+        int alive = 0;
+
+        if (generationRunning) {
+
+            if (evaluator == null || evaluator.getThreads() != workerThreads) {
+                if (evaluator != null) {
+                    evaluator.close();
+                }
+                evaluator = new PopulationEvaluator(workerThreads);
+            }
+            evaluator.update(population, deltaTime);
+
+            for (DinoAgent agent : population) {
+                if (agent.alive) alive++;
+                if (highScore < agent.score) {
+                    highScore = agent.score;
+                }
+            }
 
+            if (alive == 0) {
+                nextGeneration();
+            } else {
+                course.step(deltaTime);
+            }
+            updateDinoSprites(population);
+        }
+
+        liveAgents = alive;
         CleanupDestroyed();
+
+        return alive;
     }
 
-    public static void CleanupDestroyed(){
+    public static void addWorld(World newWorld){
+        synchronized (worlds) {
+            worlds.add(newWorld);
+        }
+    }
 
-        ArrayList<GameObject> toRemove = new ArrayList<>();
+    public static void CleanupDestroyed(){
 
-        for (GameObject obj : objects){
-            if (obj.isDestroyed()){
-                obj.OnDestroy();
-                toRemove.add(obj);
-            }
+        // Only the simulation thread adds or removes worlds, so it can walk the list unlocked
+        for (int i = 0; i < worlds.size(); i++) {
+            worlds.get(i).cleanupDestroyed();
         }
 
-        objects.removeAll(toRemove);
+        synchronized (worlds) {
+            worlds.removeIf(World::isDisposed);
+        }
     }
 
     // Evolution
     public static void updateDinoSprites(DinoAgent[] currentPopulation) {
-        DinoSprites = new ArrayList<>();
+        if (DinoSprites == null) {
+            DinoSprites = new ArrayList<>();
+        }
+        DinoSprites.clear();
 
         double bestFitness = Double.NEGATIVE_INFINITY;
+        DinoAgent bestAlive = null;
 
+        // The camera follows the best agent still running, dead agents stay where they died
         for (DinoAgent agent : currentPopulation) {
             if (agent.fitness() > bestFitness) {
                 bestFitness = agent.fitness();
                 currentBest = agent;
             }
+            if (agent.alive && (bestAlive == null || agent.fitness() > bestAlive.fitness())) {
+                bestAlive = agent;
+            }
+        }
+        if (bestAlive != null) {
+            currentBest = bestAlive;
         }
 
+        // Dead agents are kept for reuse next generation, so they are hidden rather than removed
         for (DinoAgent agent : currentPopulation) {
-            if (!showLesserDinos) {
-                agent.setVisible(agent == currentBest);
-            } else {
-                agent.setVisible(true);
-            }
+            agent.setVisible(agent.alive && (showLesserDinos || agent == currentBest));
             DinoSprites.add(agent);
         }
     }
@@ -148,50 +254,80 @@ public class Main {
         return population;
     }
 
+    // Breeds the next generation into the same agents. Every child brain is written into a spare
+    // before any agent changes, since children read their parents' brains, then each agent swaps
+    // its brain for its spare and the old one becomes next generation's spare
     public static DinoAgent[] evolve(DinoAgent[] currentPopulation){
 
         Arrays.sort(currentPopulation, (a, b) -> Double.compare(b.fitness(), a.fitness()));
-        DinoAgent[] nextGeneration = new DinoAgent[currentPopulation.length];
+
+        if (spareBrains == null || spareBrains.length != currentPopulation.length) {
+            spareBrains = new NeuralNetwork[currentPopulation.length];
+        }
 
         int eliteCount = (elitePercent * currentPopulation.length) /100;
 
         for (int i = 0; i < eliteCount; i++){
-            nextGeneration[i] = new DinoAgent(currentPopulation[i].brain.clone());
+            spareBrain(i, currentPopulation[i].brain);
         }
 
-        for (int i = eliteCount; i < nextGeneration.length; i++){
+        for (int i = eliteCount; i < currentPopulation.length; i++){
             DinoAgent parent = currentPopulation[Main.random.nextInt(Math.min(50, currentPopulation.length))];
-            NeuralNetwork childBrain = parent.brain.clone();
-            childBrain.mutate();
-            nextGeneration[i] = new DinoAgent(childBrain);
+            spareBrain(i, parent.brain).mutate();
+        }
+
+        for (int i = 0; i < currentPopulation.length; i++){
+            NeuralNetwork previous = currentPopulation[i].brain;
+            currentPopulation[i].reset(spareBrains[i]);
+            spareBrains[i] = previous;
         }
 
-        updateDinoSprites(nextGeneration);
+        updateDinoSprites(currentPopulation);
+
+        return currentPopulation;
+    }
 
-        return nextGeneration;
+    private static NeuralNetwork spareBrain(int index, NeuralNetwork source){
+        if (spareBrains[index] == null) {
+            spareBrains[index] = source.clone();
+        } else {
+            spareBrains[index].copyFrom(source);
+        }
+        return spareBrains[index];
     }
 
     //Save/Load
+    // Copies the brain and returns immediately, the file is written by the checkpoint thread
     public static void saveBrain(NeuralNetwork brain, String filename) {
-        try (FileOutputStream fileOut = new FileOutputStream(filename);
-             ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-            out.writeObject(brain);
-            System.out.println("Neural network saved to " + filename);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        checkpoints.saveBrain(brain, filename);
     }
 
     public static NeuralNetwork loadBrain(String filename) {
-        try (FileInputStream fileIn = new FileInputStream(filename);
-             ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            NeuralNetwork nn = (NeuralNetwork) in.readObject();
+        try {
+            NeuralNetwork nn = BrainFile.read(Path.of(filename));
             System.out.println("Neural network loaded from " + filename);
             return nn;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    // Rebuilds the finished generation from a snapshot and evolves it exactly as the original run would have
+    public static void resume(PopulationSnapshot snapshot) {
+        random.setState(snapshot.rngState);
+        generation = snapshot.generation;
+        highScore = snapshot.highScore;
+
+        DinoAgent[] restored = new DinoAgent[snapshot.brains.length];
+        for (int i = 0; i < restored.length; i++) {
+            DinoAgent agent = new DinoAgent(snapshot.brains[i]);
+            agent.score = snapshot.fitness[i];
+            agent.die();
+            restored[i] = agent;
+        }
+
+        population = restored;
+        nextGeneration();
+    }
 }
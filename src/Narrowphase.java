@@ -0,0 +1,177 @@
+// Exact collision tests between two placed sprites, looked up by their pair of shapes.
+// Every pair is registered once and the mirrored entry swaps the arguments
+public class Narrowphase {
+
+    public interface PairTest {
+        boolean test(Sprite a, double ax, double ay, Sprite b, double bx, double by);
+    }
+
+    private static final int SHAPES = CollisionShape.values().length;
+    private static final PairTest[] table = new PairTest[SHAPES * SHAPES];
+
+    static {
+        CollisionShape[] shapes = CollisionShape.values();
+
+        // Masks and tiles first, they take over whatever the other shape is
+        for (CollisionShape shape : shapes) {
+            register(CollisionShape.ALPHA_MASK, shape, Narrowphase::alphaMask);
+        }
+        for (CollisionShape shape : shapes) {
+            register(CollisionShape.TILEMAP, shape, Narrowphase::tilemap);
+        }
+
+        register(CollisionShape.BOX, CollisionShape.BOX, Narrowphase::boxBox);
+        register(CollisionShape.CIRCLE, CollisionShape.CIRCLE, Narrowphase::circleCircle);
+        register(CollisionShape.CIRCLE, CollisionShape.BOX, Narrowphase::circleBox);
+        register(CollisionShape.CAPSULE, CollisionShape.BOX, Narrowphase::capsuleBox);
+        register(CollisionShape.CAPSULE, CollisionShape.CIRCLE, Narrowphase::capsuleCircle);
+        register(CollisionShape.CAPSULE, CollisionShape.CAPSULE, Narrowphase::capsuleCapsule);
+    }
+
+    public static void register(CollisionShape first, CollisionShape second, PairTest test) {
+        table[first.ordinal() * SHAPES + second.ordinal()] = test;
+        table[second.ordinal() * SHAPES + first.ordinal()] =
+                (a, ax, ay, b, bx, by) -> test.test(b, bx, by, a, ax, ay);
+    }
+
+    // a placed at (ax, ay) against b at (bx, by), pairs with no test never collide
+    public static boolean test(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        PairTest test = table[a.collisionShape.ordinal() * SHAPES + b.collisionShape.ordinal()];
+        return test != null && test.test(a, ax, ay, b, bx, by);
+    }
+
+    // ---------------- PAIR TESTS ----------------
+
+    private static boolean boxBox(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        return boxesOverlap(ax, ay, a.getWidth()/2, a.getHeight()/2, bx, by, b.getWidth()/2, b.getHeight()/2);
+    }
+
+    private static boolean alphaMask(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        AlphaMask maskA = a.getAlphaMask();
+        AlphaMask maskB = b.getAlphaMask();
+        if (maskA == null || maskB == null) return false;
+
+        return AlphaMask.overlaps(
+                maskA, (int) Math.floor(ax - a.getWidth()/2), (int) Math.floor(ay - a.getHeight()/2),
+                maskB, (int) Math.floor(bx - b.getWidth()/2), (int) Math.floor(by - b.getHeight()/2));
+    }
+
+    // The other sprite is tested by its box whatever its own shape
+    private static boolean tilemap(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        if (!(a instanceof Tilemap map)) return boxBox(a, ax, ay, b, bx, by);
+
+        double bx1 = bx - b.getWidth() / 2;
+        double by1 = by - b.getHeight() / 2;
+        double bx2 = bx + b.getWidth() / 2;
+        double by2 = by + b.getHeight() / 2;
+
+        double tileSize = map.getTileWorldSize();
+        double mapLeft = ax - map.getWidth() / 2;
+        double mapTop  = ay - map.getHeight() / 2;
+
+        int startX = (int) Math.floor((bx1 - mapLeft) / tileSize);
+        int endX   = (int) Math.floor((bx2 - mapLeft - 0.0001) / tileSize);
+        int startY = (int) Math.floor((by1 - mapTop) / tileSize);
+        int endY   = (int) Math.floor((by2 - mapTop - 0.0001) / tileSize);
+
+        for (int ty = startY; ty <= endY; ty++) {
+            for (int tx = startX; tx <= endX; tx++) {
+                if (map.getTile(tx, ty) >= 0) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean circleCircle(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        double reach = radius(a) + radius(b);
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx*dx + dy*dy < reach*reach;
+    }
+
+    private static boolean circleBox(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        return circleOverlapsBox(ax, ay, radius(a), bx, by, b.getWidth()/2, b.getHeight()/2);
+    }
+
+    // A capsule is its straight middle box plus a circle at each end
+    private static boolean capsuleBox(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        double r = radius(a);
+        double half = capsuleHalfLength(a);
+        boolean horizontal = a.getWidth() >= a.getHeight();
+        double ex = horizontal ? half : 0;
+        double ey = horizontal ? 0 : half;
+
+        double hx = b.getWidth()/2;
+        double hy = b.getHeight()/2;
+
+        return boxesOverlap(ax, ay, horizontal ? half : r, horizontal ? r : half, bx, by, hx, hy)
+                || circleOverlapsBox(ax - ex, ay - ey, r, bx, by, hx, hy)
+                || circleOverlapsBox(ax + ex, ay + ey, r, bx, by, hx, hy);
+    }
+
+    private static boolean capsuleCircle(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        double reach = radius(a) + radius(b);
+        return segmentDistanceSquared(a, ax, ay, bx, by) < reach*reach;
+    }
+
+    // Both segments are axis aligned, so the closest points are found per axis
+    private static boolean capsuleCapsule(Sprite a, double ax, double ay, Sprite b, double bx, double by) {
+        double halfA = capsuleHalfLength(a);
+        double halfB = capsuleHalfLength(b);
+        boolean horizontalA = a.getWidth() >= a.getHeight();
+        boolean horizontalB = b.getWidth() >= b.getHeight();
+
+        double dx = intervalGap(ax - (horizontalA ? halfA : 0), ax + (horizontalA ? halfA : 0),
+                bx - (horizontalB ? halfB : 0), bx + (horizontalB ? halfB : 0));
+        double dy = intervalGap(ay - (horizontalA ? 0 : halfA), ay + (horizontalA ? 0 : halfA),
+                by - (horizontalB ? 0 : halfB), by + (horizontalB ? 0 : halfB));
+
+        double reach = radius(a) + radius(b);
+        return dx*dx + dy*dy < reach*reach;
+    }
+
+    // ---------------- HELPERS ----------------
+
+    private static double radius(Sprite sprite) {
+        return Math.min(sprite.getWidth(), sprite.getHeight()) / 2;
+    }
+
+    private static double capsuleHalfLength(Sprite sprite) {
+        return Math.abs(sprite.getWidth() - sprite.getHeight()) / 2;
+    }
+
+    private static boolean boxesOverlap(double ax, double ay, double ahx, double ahy, double bx, double by, double bhx, double bhy) {
+        return ax - ahx < bx + bhx && ax + ahx > bx - bhx &&
+                ay - ahy < by + bhy && ay + ahy > by - bhy;
+    }
+
+    private static boolean circleOverlapsBox(double cx, double cy, double r, double bx, double by, double hx, double hy) {
+        double dx = cx - Math.clamp(cx, bx - hx, bx + hx);
+        double dy = cy - Math.clamp(cy, by - hy, by + hy);
+        return dx*dx + dy*dy < r*r;
+    }
+
+    // Squared distance from a point to the capsule's middle segment
+    private static double segmentDistanceSquared(Sprite capsule, double cx, double cy, double px, double py) {
+        double half = capsuleHalfLength(capsule);
+        double dx, dy;
+        if (capsule.getWidth() >= capsule.getHeight()) {
+            dx = px - Math.clamp(px, cx - half, cx + half);
+            dy = py - cy;
+        } else {
+            dx = px - cx;
+            dy = py - Math.clamp(py, cy - half, cy + half);
+        }
+        return dx*dx + dy*dy;
+    }
+
+    // Distance between two intervals, 0 when they overlap
+    private static double intervalGap(double min1, double max1, double min2, double max2) {
+        if (max1 < min2) return min2 - max1;
+        if (max2 < min1) return min1 - max2;
+        return 0;
+    }
+}
@@ -1,53 +1,249 @@
-import java.io.Serializable;
 import java.util.Arrays;
 
-public class NeuralNetwork implements Serializable {
-
-    private static final long serialVersionUID = 1L;
+public class NeuralNetwork {
 
     public double mutationRate = 0.05;
     public int generationNumber = 1;
 
     public int[] layers;          // layer sizes
-    public double[][][] weights;  // weights[layer][from][to]
+    private int[] layerOffsets;   // start of each layer in weights
+    public Activation[] activations; // activation applied by each layer
+
+    // Every layer packed back to back, each row-major [to][from]. Only the
+    // array matching the precision is set
+    public Precision precision = Precision.DOUBLE;
+    public double[] weights;
+    public float[] floatWeights;
+    public byte[] quantizedWeights;
+    public float[] layerScales;   // int8 weight = quantized value * scale of its layer
+
+    // Reused activation buffers so forward() allocates nothing
+    private double[][] scratch;
 
     public NeuralNetwork(int... layerSizes) {
+        this(layerSizes, Precision.DOUBLE);
+
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = Main.random.nextGaussian();
+        }
+    }
+
+    // Zeroed network for BrainFile to fill in
+    NeuralNetwork(int[] layerSizes, Precision storedPrecision) {
         layers = layerSizes.clone();
+        layerOffsets = new int[layers.length - 1];
 
-        weights = new double[layers.length - 1][][];
+        int total = 0;
+        for (int l = 0; l < layerOffsets.length; l++) {
+            layerOffsets[l] = total;
+            total += layers[l] * layers[l + 1];
+        }
 
-        for (int l = 0; l < weights.length; l++) {
-            int from = layers[l];
-            int to = layers[l + 1];
+        precision = storedPrecision;
+        switch (precision) {
+            case DOUBLE -> weights = new double[total];
+            case FLOAT -> floatWeights = new float[total];
+            case INT8 -> {
+                quantizedWeights = new byte[total];
+                layerScales = new float[layerOffsets.length];
+            }
+        }
 
-            weights[l] = new double[from][to];
+        activations = new Activation[layers.length - 1];
+        Arrays.fill(activations, Activation.TANH);
+    }
+
+    private NeuralNetwork(NeuralNetwork source) {
+        layers = source.layers.clone();
+        layerOffsets = source.layerOffsets.clone();
+        mutationRate = source.mutationRate;
+
+        activations = new Activation[layers.length - 1];
+        for (int l = 0; l < activations.length; l++) {
+            activations[l] = source.getActivation(l);
+        }
+
+        precision = source.precision;
+        if (source.weights != null) weights = source.weights.clone();
+        if (source.floatWeights != null) floatWeights = source.floatWeights.clone();
+        if (source.quantizedWeights != null) quantizedWeights = source.quantizedWeights.clone();
+        if (source.layerScales != null) layerScales = source.layerScales.clone();
+    }
 
-            for (int i = 0; i < from; i++) {
-                for (int j = 0; j < to; j++) {
-                    weights[l][i][j] = Main.random.nextGaussian();
+    public int getWeightCount() {
+        int last = layerOffsets.length - 1;
+        return layerOffsets[last] + layers[last] * layers[last + 1];
+    }
+
+    public int getWeightBytes() {
+        return getWeightCount() * precision.bytesPerWeight;
+    }
+
+    private int layerOf(int k) {
+        int l = layerOffsets.length - 1;
+        while (layerOffsets[l] > k) l--;
+        return l;
+    }
+
+    public double getWeight(int k) {
+        return switch (precision) {
+            case DOUBLE -> weights[k];
+            case FLOAT -> floatWeights[k];
+            case INT8 -> quantizedWeights[k] * layerScales[layerOf(k)];
+        };
+    }
+
+    public void setWeight(int k, double value) {
+        switch (precision) {
+            case DOUBLE -> weights[k] = value;
+            case FLOAT -> floatWeights[k] = (float) value;
+            case INT8 -> {
+                int l = layerOf(k);
+                // Past the layer's range the scale is widened instead of clipping, so mutation
+                // can grow int8 weights as freely as double and float ones
+                if (Math.abs(value) > 127 * layerScales[l]) {
+                    rescaleLayer(l, Math.abs(value) / 127);
                 }
+                quantizedWeights[k] = quantize(value, layerScales[l]);
             }
         }
     }
 
-    public double[] forward(double[] input) {
+    // Requantizes one int8 layer against a new scale
+    private void rescaleLayer(int l, double newScale) {
+        float oldScale = layerScales[l];
+        layerScales[l] = (float) newScale;
 
-        double[] activations = input;
+        int start = layerOffsets[l];
+        int end = start + layers[l] * layers[l + 1];
+        for (int k = start; k < end; k++) {
+            quantizedWeights[k] = quantize(quantizedWeights[k] * oldScale, layerScales[l]);
+        }
+    }
+
+    private static byte quantize(double value, float scale) {
+        return (byte) Math.max(-127, Math.min(127, Math.round(value / scale)));
+    }
+
+    // Dequantized copy of every weight
+    public void copyWeightsTo(double[] out) {
+        switch (precision) {
+            case DOUBLE -> System.arraycopy(weights, 0, out, 0, weights.length);
+            case FLOAT -> {
+                for (int k = 0; k < floatWeights.length; k++) out[k] = floatWeights[k];
+            }
+            case INT8 -> {
+                for (int l = 0; l < layerOffsets.length; l++) {
+                    int start = layerOffsets[l];
+                    int end = start + layers[l] * layers[l + 1];
+                    for (int k = start; k < end; k++) out[k] = quantizedWeights[k] * layerScales[l];
+                }
+            }
+        }
+    }
+
+    // Converts the stored weights, int8 picks each layer's scale from its largest weight
+    public void setPrecision(Precision newPrecision) {
+        if (newPrecision == precision) return;
 
-        for (int l = 0; l < weights.length; l++) {
+        double[] values = new double[getWeightCount()];
+        copyWeightsTo(values);
 
-            int nextSize = layers[l + 1];
-            double[] next = new double[nextSize];
+        weights = null;
+        floatWeights = null;
+        quantizedWeights = null;
+        layerScales = null;
+        precision = newPrecision;
 
-            for (int j = 0; j < nextSize; j++) {
-                double sum = 0;
+        switch (newPrecision) {
+            case DOUBLE -> weights = values;
+            case FLOAT -> {
+                floatWeights = new float[values.length];
+                for (int k = 0; k < values.length; k++) floatWeights[k] = (float) values[k];
+            }
+            case INT8 -> {
+                quantizedWeights = new byte[values.length];
+                layerScales = new float[layerOffsets.length];
 
-                for (int i = 0; i < activations.length; i++) {
-                    sum += activations[i] * weights[l][i][j];
+                for (int l = 0; l < layerOffsets.length; l++) {
+                    int start = layerOffsets[l];
+                    int end = start + layers[l] * layers[l + 1];
+
+                    double max = 0;
+                    for (int k = start; k < end; k++) max = Math.max(max, Math.abs(values[k]));
+                    layerScales[l] = max > 0 ? (float) (max / 127) : 1;
+
+                    for (int k = start; k < end; k++) quantizedWeights[k] = quantize(values[k], layerScales[l]);
                 }
+            }
+        }
+    }
 
-                next[j] = Math.tanh(sum);
+    public void setActivation(Activation activation) {
+        Arrays.fill(activations, activation);
+    }
+
+    public void setActivation(int layerIndex, Activation activation) {
+        activations[layerIndex] = activation;
+    }
+
+    public Activation getActivation(int layerIndex) {
+        return activations[layerIndex];
+    }
+
+    private double[][] getScratch() {
+        if (scratch == null) {
+            scratch = new double[layers.length - 1][];
+            for (int l = 0; l < scratch.length; l++) {
+                scratch[l] = new double[layers[l + 1]];
             }
+        }
+        return scratch;
+    }
+
+    // Returns a buffer owned by this network, it is overwritten by the next call
+    public double[] forward(double[] input) {
+
+        Kernels kernels = Kernels.active;
+        double[][] buffers = getScratch();
+        double[] activations = input;
+
+        for (int l = 0; l < buffers.length; l++) {
+
+            int from = layers[l];
+            int to = layers[l + 1];
+            int offset = layerOffsets[l];
+            double[] next = buffers[l];
+
+            switch (precision) {
+                case DOUBLE -> {
+                    for (int j = 0; j < to; j++) {
+                        next[j] = kernels.dot(activations, 0, weights, offset + j * from, from);
+                    }
+                }
+                case FLOAT -> {
+                    for (int j = 0; j < to; j++) {
+                        double sum = 0;
+                        int row = offset + j * from;
+                        for (int i = 0; i < from; i++) {
+                            sum += activations[i] * floatWeights[row + i];
+                        }
+                        next[j] = sum;
+                    }
+                }
+                case INT8 -> {
+                    float scale = layerScales[l];
+                    for (int j = 0; j < to; j++) {
+                        double sum = 0;
+                        int row = offset + j * from;
+                        for (int i = 0; i < from; i++) {
+                            sum += activations[i] * quantizedWeights[row + i];
+                        }
+                        next[j] = sum * scale;
+                    }
+                }
+            }
+            kernels.activate(getActivation(l), next, 0, to);
 
             activations = next;
         }
@@ -56,52 +252,94 @@ public class NeuralNetwork implements Serializable {
     }
 
     public NeuralNetwork clone() {
-        NeuralNetwork copy = new NeuralNetwork(layers);
+        return new NeuralNetwork(this);
+    }
 
-        for (int l = 0; l < weights.length; l++) {
-            for (int i = 0; i < weights[l].length; i++) {
-                System.arraycopy(weights[l][i], 0, copy.weights[l][i], 0, weights[l][i].length);
-            }
+    // Copies another network into this one, reusing this network's arrays when they fit
+    public void copyFrom(NeuralNetwork source) {
+        if (!Arrays.equals(layers, source.layers)) {
+            layers = source.layers.clone();
+            layerOffsets = source.layerOffsets.clone();
+            activations = new Activation[layers.length - 1];
+            scratch = null;
         }
 
-        return copy;
+        mutationRate = source.mutationRate;
+        generationNumber = source.generationNumber;
+        System.arraycopy(source.activations, 0, activations, 0, activations.length);
+
+        precision = source.precision;
+        weights = copyInto(source.weights, weights);
+        floatWeights = copyInto(source.floatWeights, floatWeights);
+        quantizedWeights = copyInto(source.quantizedWeights, quantizedWeights);
+        layerScales = copyInto(source.layerScales, layerScales);
     }
 
-    public void mutate() {
+    private static double[] copyInto(double[] source, double[] target) {
+        if (source == null) return null;
+        if (target == null || target.length != source.length) return source.clone();
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
 
-        for (int l = 0; l < weights.length; l++) {
-            for (int i = 0; i < weights[l].length; i++) {
-                for (int j = 0; j < weights[l][i].length; j++) {
+    private static float[] copyInto(float[] source, float[] target) {
+        if (source == null) return null;
+        if (target == null || target.length != source.length) return source.clone();
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
 
-                    if (Main.random.nextDouble() < mutationRate) {
-                        weights[l][i][j] += Main.random.nextGaussian() * 0.3;
-                    }
+    private static byte[] copyInto(byte[] source, byte[] target) {
+        if (source == null) return null;
+        if (target == null || target.length != source.length) return source.clone();
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
 
-                }
+    public void mutate() {
+
+        int count = getWeightCount();
+        for (int k = 0; k < count; k++) {
+            if (Main.random.nextDouble() < mutationRate) {
+                setWeight(k, getWeight(k) + Main.random.nextGaussian() * 0.3);
             }
         }
     }
 
-    public double[][] getWeights(int layerIndex) {
-        return weights[layerIndex];
+    // Index of the weight from neuron i to neuron j of the next layer
+    public int weightIndex(int layerIndex, int i, int j) {
+        return layerOffsets[layerIndex] + j * layers[layerIndex] + i;
     }
 
-    public void setWeights(double[][][] newWeights) {
+    // Copy of one layer in [from][to] form
+    public double[][] getWeights(int layerIndex) {
+        double[][] layer = new double[layers[layerIndex]][layers[layerIndex + 1]];
 
-        weights = new double[newWeights.length][][];
+        for (int i = 0; i < layer.length; i++) {
+            for (int j = 0; j < layer[i].length; j++) {
+                layer[i][j] = getWeight(weightIndex(layerIndex, i, j));
+            }
+        }
 
-        for (int l = 0; l < newWeights.length; l++) {
+        return layer;
+    }
 
-            weights[l] = new double[newWeights[l].length][newWeights[l][0].length];
+    // Takes weights in [layer][from][to] form
+    public void setWeights(double[][][] newWeights) {
 
+        for (int l = 0; l < newWeights.length; l++) {
             for (int i = 0; i < newWeights[l].length; i++) {
-                System.arraycopy(newWeights[l][i], 0, weights[l][i], 0, newWeights[l][i].length);
+                for (int j = 0; j < newWeights[l][i].length; j++) {
+                    setWeight(weightIndex(l, i, j), newWeights[l][i][j]);
+                }
             }
         }
     }
 
     @Override
     public String toString() {
-        return Arrays.deepToString(weights);
+        double[] values = new double[getWeightCount()];
+        copyWeightsTo(values);
+        return precision + " " + Arrays.toString(values);
     }
 }
@@ -0,0 +1,284 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ObstacleCourse {
+
+    public static final byte CACTUS = 0;
+    public static final byte BIRD = 1;
+
+    private static final double[] WIDTH = {30, 60};
+    private static final double[] HEIGHT = {60, 40};
+    private static final String[] TEXTURE = {"Cactus.png", "bird.png"};
+
+    // Pixel-perfect hits against the obstacle textures instead of their boxes
+    public static boolean pixelPerfect = false;
+    private static final AlphaMask[] masks = new AlphaMask[TEXTURE.length];
+
+    private static final double SPAWN_X = 410;
+    private static final double DESPAWN_X = -410;
+
+    // Generation-wide course, every agent is scored against the same obstacles
+    private final Random random;
+
+    public double speed = -5; // per base tick
+    private double lastShift = 0; // how far every obstacle moved in the last step
+
+    private int minSpawnTime = 30;
+    private int maxSpawnTime = 120;
+
+    private double spawnTimer = 0; // in base ticks
+    private int nextSpawnTime = 60; // initial delay
+
+    // Live obstacles ordered left to right, stored as flat arrays instead of Sprites
+    private int count = 0;
+    private byte[] type = new byte[8];
+    private double[] xs = new double[8];
+    private double[] ys = new double[8];
+
+    // Sprites that draw the obstacles, only created when there is a window
+    private Sprite[] views = new Sprite[8];
+
+    // Hidden view sprites per obstacle type, shared by every course so despawned and disposed
+    // obstacles are reused instead of destroyed and rebuilt
+    private static final Sprite[][] pool = new Sprite[TEXTURE.length][8];
+    private static final int[] pooled = new int[TEXTURE.length];
+
+    public ObstacleCourse(long seed){
+        random = new Random(seed);
+    }
+
+    public int size(){
+        return count;
+    }
+
+    public byte getType(int index){
+        return type[index];
+    }
+
+    public double getX(int index){
+        return xs[index];
+    }
+
+    public double getY(int index){
+        return ys[index];
+    }
+
+    public double getWidth(int index){
+        return WIDTH[type[index]];
+    }
+
+    public double getHeight(int index){
+        return HEIGHT[type[index]];
+    }
+
+    // Index of the first obstacle right of x, or size() if there is none
+    public int firstAhead(double x){
+        for (int i = 0; i < count; i++) {
+            if (xs[i] > x) return i;
+        }
+        return count;
+    }
+
+    public boolean collides(double centerX, double centerY, double width, double height){
+        return collides(centerX, centerY, width, height, null);
+    }
+
+    // With pixelPerfect on and a mask given, overlapping boxes only count if opaque pixels touch
+    public boolean collides(double centerX, double centerY, double width, double height, AlphaMask bodyMask){
+        return collides(centerX, centerY, width, height, bodyMask, centerX, centerY);
+    }
+
+    // Also catches obstacles the body passed through since it was last checked at (previousX, previousY)
+    // while the course moved by one step, so long ticks cannot tunnel. Box only, so skipped with a mask
+    public boolean collides(double centerX, double centerY, double width, double height, AlphaMask bodyMask, double previousX, double previousY){
+        double ax1 = centerX - width/2;
+        double ay1 = centerY - height/2;
+        double ax2 = centerX + width/2;
+        double ay2 = centerY + height/2;
+
+        for (int i = 0; i < count; i++) {
+            double halfW = WIDTH[type[i]]/2;
+            double halfH = HEIGHT[type[i]]/2;
+
+            if (ax1 < xs[i] + halfW && ax2 > xs[i] - halfW &&
+                    ay1 < ys[i] + halfH && ay2 > ys[i] - halfH) {
+
+                AlphaMask obstacleMask = pixelPerfect && bodyMask != null ? getMask(type[i]) : null;
+                if (obstacleMask == null) return true;
+
+                if (AlphaMask.overlaps(
+                        bodyMask, (int) Math.floor(ax1), (int) Math.floor(ay1),
+                        obstacleMask, (int) Math.floor(xs[i] - halfW), (int) Math.floor(ys[i] - halfH))) {
+                    return true;
+                }
+            } else if (bodyMask == null || !pixelPerfect) {
+
+                // Path of the body relative to the obstacle against the box grown by the body's size
+                double startX = previousX - (xs[i] - lastShift);
+                double startY = previousY - ys[i];
+                if (segmentCrossesBox(startX, startY, centerX - xs[i], centerY - ys[i], halfW + width/2, halfH + height/2)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // Slab test of the segment from start to end against the box centred on the origin
+    private static boolean segmentCrossesBox(double startX, double startY, double endX, double endY, double halfW, double halfH){
+        double enter = 0;
+        double exit = 1;
+
+        double dx = endX - startX;
+        if (dx == 0) {
+            if (Math.abs(startX) >= halfW) return false;
+        } else {
+            double t1 = (-halfW - startX) / dx;
+            double t2 = (halfW - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        double dy = endY - startY;
+        if (dy == 0) {
+            if (Math.abs(startY) >= halfH) return false;
+        } else {
+            double t1 = (-halfH - startY) / dy;
+            double t2 = (halfH - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        return enter < exit;
+    }
+
+    private static AlphaMask getMask(byte obstacleType){
+        AlphaMask mask = masks[obstacleType];
+        if (mask == null) {
+            BufferedImage image = Sprite.getTexture(TEXTURE[obstacleType]);
+            if (image == null) return null;
+
+            mask = AlphaMask.get(TEXTURE[obstacleType], image, (int) WIDTH[obstacleType], (int) HEIGHT[obstacleType]);
+            masks[obstacleType] = mask;
+        }
+        return mask;
+    }
+
+    public void step(double deltaTime){
+        speed -= 0.25 * deltaTime;
+        speed = Math.max(speed, -15);
+        if (speed < -10){
+            minSpawnTime = 15;
+        }
+
+        handleSpawning();
+        handleMoving();
+    }
+
+    private void handleSpawning(){
+
+        spawnTimer += SimulationLoop.stepScale();
+
+        if (spawnTimer >= nextSpawnTime) {
+
+            spawnObstacle();
+
+            spawnTimer = 0;
+
+            nextSpawnTime = random.nextInt(minSpawnTime, maxSpawnTime);
+        }
+    }
+
+    private void spawnObstacle(){
+        byte newType = CACTUS;
+        double yPos = 150;
+        if (random.nextInt(0,5) == 1){
+            newType = BIRD;
+            yPos = random.nextDouble(70,130);
+        }
+
+        if (count == xs.length) {
+            int newLength = count * 2;
+            type = Arrays.copyOf(type, newLength);
+            xs = Arrays.copyOf(xs, newLength);
+            ys = Arrays.copyOf(ys, newLength);
+            views = Arrays.copyOf(views, newLength);
+        }
+
+        type[count] = newType;
+        xs[count] = SPAWN_X;
+        ys[count] = yPos;
+
+        if (!Main.headless) {
+            views[count] = acquireView(newType, yPos);
+        }
+
+        count++;
+    }
+
+    private void handleMoving(){
+        int removed = 0;
+        lastShift = speed * SimulationLoop.stepScale();
+
+        for (int i = 0; i < count; i++) {
+            xs[i] += lastShift;
+
+            if (xs[i] < DESPAWN_X) {
+                if (views[i] != null) releaseView(type[i], views[i]);
+                removed++;
+                continue;
+            }
+
+            if (views[i] != null) views[i].GoTo(xs[i], ys[i]);
+
+            // Compact in place, obstacles keep their left to right order
+            if (removed > 0) {
+                type[i - removed] = type[i];
+                xs[i - removed] = xs[i];
+                ys[i - removed] = ys[i];
+                views[i - removed] = views[i];
+            }
+        }
+
+        for (int i = count - removed; i < count; i++) {
+            views[i] = null;
+        }
+        count -= removed;
+    }
+
+    // Hides the course sprites when the generation ends, the next course reuses them
+    public void dispose(){
+        for (int i = 0; i < count; i++) {
+            if (views[i] != null) releaseView(type[i], views[i]);
+            views[i] = null;
+        }
+        count = 0;
+    }
+
+    private static Sprite acquireView(byte obstacleType, double yPos){
+        if (pooled[obstacleType] == 0) {
+            return new Sprite(TEXTURE[obstacleType], new Vector2(WIDTH[obstacleType], HEIGHT[obstacleType]), 100, new Vector2(SPAWN_X, yPos));
+        }
+
+        Sprite view = pool[obstacleType][--pooled[obstacleType]];
+        pool[obstacleType][pooled[obstacleType]] = null;
+
+        view.GoTo(SPAWN_X, yPos);
+        view.savePreviousPosition(); // so it is not drawn sliding in from where it despawned
+        view.setVisible(true);
+        return view;
+    }
+
+    private static void releaseView(byte obstacleType, Sprite view){
+        view.setVisible(false);
+
+        Sprite[] free = pool[obstacleType];
+        if (pooled[obstacleType] == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+            pool[obstacleType] = free;
+        }
+        free[pooled[obstacleType]++] = view;
+    }
+}
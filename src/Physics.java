@@ -0,0 +1,13 @@
+public class Physics {
+
+    public static double gravityScale = 1;
+
+    public static void setGravity(double newGravity){
+        gravityScale = newGravity;
+    }
+
+    // Integrates every physics body in a world by one tick
+    public static void step(PhysicsStore bodies){
+        bodies.integrate(gravityScale, SimulationLoop.stepScale());
+    }
+}
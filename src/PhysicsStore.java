@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+// Body state of every GameObject in a world, one slot per body in parallel primitive arrays.
+// Removing a body moves the last one into its slot, so live bodies stay packed at [0, count)
+public class PhysicsStore {
+
+    public static final byte PHYSICS = 1;       // integrated by the physics step
+    public static final byte MOVE_CALLBACK = 2; // moved through GameObject.Move, for sweeps and the grid
+
+    int count = 0;
+    GameObject[] owners;
+    double[] x, y;
+    double[] previousX, previousY;
+    double[] velocityX, velocityY;
+    double[] width, height;
+    byte[] flags;
+
+    public PhysicsStore() {
+        this(16);
+    }
+
+    public PhysicsStore(int capacity) {
+        owners = new GameObject[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        previousX = new double[capacity];
+        previousY = new double[capacity];
+        velocityX = new double[capacity];
+        velocityY = new double[capacity];
+        width = new double[capacity];
+        height = new double[capacity];
+        flags = new byte[capacity];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Returns the new body's slot, zeroed
+    int add(GameObject owner) {
+        if (count == owners.length) {
+            grow(count * 2);
+        }
+
+        int body = count++;
+        owners[body] = owner;
+        x[body] = 0;
+        y[body] = 0;
+        previousX[body] = 0;
+        previousY[body] = 0;
+        velocityX[body] = 0;
+        velocityY[body] = 0;
+        width[body] = 0;
+        height[body] = 0;
+        flags[body] = 0;
+        return body;
+    }
+
+    // Swap-removes a body and tells the owner of the moved body its new slot
+    void remove(int body) {
+        int last = --count;
+
+        if (body != last) {
+            owners[body] = owners[last];
+            x[body] = x[last];
+            y[body] = y[last];
+            previousX[body] = previousX[last];
+            previousY[body] = previousY[last];
+            velocityX[body] = velocityX[last];
+            velocityY[body] = velocityY[last];
+            width[body] = width[last];
+            height[body] = height[last];
+            flags[body] = flags[last];
+            owners[body].body = body;
+        }
+
+        owners[last] = null;
+    }
+
+    // Copies a body into a store of its own, so a removed object can still be read.
+    // A previous single store is reused when one is passed in
+    PhysicsStore detach(int body, PhysicsStore single) {
+        if (single == null) single = new PhysicsStore(1);
+        single.count = 0;
+        single.add(owners[body]);
+        single.x[0] = x[body];
+        single.y[0] = y[body];
+        single.previousX[0] = previousX[body];
+        single.previousY[0] = previousY[body];
+        single.velocityX[0] = velocityX[body];
+        single.velocityY[0] = velocityY[body];
+        single.width[0] = width[body];
+        single.height[0] = height[body];
+        single.flags[0] = flags[body];
+        return single;
+    }
+
+    private void grow(int capacity) {
+        owners = Arrays.copyOf(owners, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    public void savePreviousPositions() {
+        System.arraycopy(x, 0, previousX, 0, count);
+        System.arraycopy(y, 0, previousY, 0, count);
+    }
+
+    // Integrates every physics body by one tick. Plain bodies are advanced in place, bodies that
+    // collide or sit in a broadphase grid go through Move so they are swept and refiled. Agents are
+    // such bodies, their step is the grid query, sweep and ground probe, not the call into Move
+    public void integrate(double gravity, double scale) {
+        double gravityStep = gravity * scale;
+
+        for (int i = 0; i < count; i++) {
+            byte f = flags[i];
+            if ((f & PHYSICS) == 0) continue;
+
+            if ((f & MOVE_CALLBACK) != 0) {
+                GameObject owner = owners[i];
+                owner.clearContacts();
+                owner.Move(velocityX[i] * scale, velocityY[i] * scale);
+                owner.updateContacts();
+            } else {
+                x[i] += velocityX[i] * scale;
+                y[i] += velocityY[i] * scale;
+            }
+
+            velocityY[i] += gravityStep;
+        }
+    }
+}
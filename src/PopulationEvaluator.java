@@ -0,0 +1,154 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class PopulationEvaluator {
+
+    public static boolean batchInference = true;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+
+    private BatchInference batch;
+    private RangeAction batchForward;
+    private boolean batchPacked = false;
+
+    // Bound once so a tick does not allocate new method references
+    private final RangeAction updateRange = this::updateRange;
+    private final RangeAction senseRange = this::senseRange;
+    private final RangeAction actRange = this::actRange;
+    private DinoAgent[] agents;
+    private double deltaTime;
+
+    public PopulationEvaluator(int threadCount) {
+        threads = Math.max(1, threadCount);
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Stops the worker threads, the evaluator must not be used afterwards
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // Called when the population's brains were replaced in place, the batch is repacked next update
+    public void invalidate() {
+        batchPacked = false;
+    }
+
+    interface RangeAction {
+        void run(int start, int end);
+    }
+
+    // Updates every agent for one tick, splitting the population across the worker threads
+    public void update(DinoAgent[] population, double tickDelta) {
+        agents = population;
+        deltaTime = tickDelta;
+
+        if (!batchInference) {
+            forRange(population.length, updateRange);
+            return;
+        }
+
+        // Brains are fixed for a generation, so the batch tensor is packed once per generation
+        if (batch == null || batch.getPopulation() != population) {
+            batch = new BatchInference(population);
+            batchForward = batch::forward;
+        } else if (!batchPacked) {
+            batch.repack();
+        }
+        batchPacked = true;
+        batch.compact();
+
+        forRange(population.length, senseRange);
+        forRange(batch.size(), batchForward);
+        forRange(population.length, actRange);
+    }
+
+    private void forRange(int length, RangeAction action) {
+        if (pool == null || length < 2) {
+            action.run(0, length);
+            return;
+        }
+
+        // A few chunks per worker so threads that finish early can steal work
+        int chunkSize = Math.max(1, length / (threads * 4));
+        pool.invoke(new RangeTask(action, 0, length, chunkSize));
+    }
+
+    // Each agent lives in its own world, so its update and physics touch nothing another worker does.
+    // What they share, the course, the floor and the texture and mask caches, is only read here or concurrent
+    private void updateRange(int start, int end) {
+        boolean interpolate = !Main.headless;
+
+        for (int i = start; i < end; i++) {
+            DinoAgent agent = agents[i];
+            World world = agent.getWorld();
+
+            if (interpolate) {
+                world.savePreviousPositions();
+            }
+            agent.update(deltaTime);
+            world.step();
+        }
+    }
+
+    private void senseRange(int start, int end) {
+        boolean interpolate = !Main.headless;
+
+        for (int i = start; i < end; i++) {
+            DinoAgent agent = agents[i];
+
+            if (interpolate) {
+                agent.getWorld().savePreviousPositions();
+            }
+            if (agent.sense(deltaTime)) {
+                batch.setInputs(agent.batchSlot, agent.inputs);
+            }
+        }
+    }
+
+    private void actRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            DinoAgent agent = agents[i];
+
+            if (agent.alive) {
+                batch.getOutputs(agent.batchSlot, agent.outputs);
+                agent.act(agent.outputs);
+            }
+            agent.getWorld().step();
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private final RangeAction action;
+        private final int start;
+        private final int end;
+        private final int chunkSize;
+
+        RangeTask(RangeAction action, int start, int end, int chunkSize) {
+            this.action = action;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunkSize) {
+                action.run(start, end);
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(
+                    new RangeTask(action, start, mid, chunkSize),
+                    new RangeTask(action, mid, end, chunkSize)
+            );
+        }
+    }
+}
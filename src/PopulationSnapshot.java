@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Whole gene pool at the end of a generation, enough to resume training exactly:
+//   int magic "DPOP", int version, int generation, double high score, long rng state,
+//   int population size, then per agent a double fitness followed by a BrainFile brain
+public class PopulationSnapshot {
+
+    public static final int MAGIC = 0x504F5044; // "DPOP" read little-endian
+    public static final int VERSION = 1;
+
+    public int generation;
+    public double highScore;
+    public long rngState;
+    public NeuralNetwork[] brains = new NeuralNetwork[0];
+    public double[] fitness = new double[0];
+
+    public PopulationSnapshot() {
+    }
+
+    public PopulationSnapshot(int generation, double highScore, long rngState, NeuralNetwork[] brains, double[] fitness) {
+        this.generation = generation;
+        this.highScore = highScore;
+        this.rngState = rngState;
+        this.brains = brains;
+        this.fitness = fitness;
+    }
+
+    // Copies the population and training state in, reusing this snapshot's brain buffers
+    public void capture(DinoAgent[] population) {
+        if (brains.length != population.length) {
+            brains = new NeuralNetwork[population.length];
+            fitness = new double[population.length];
+        }
+
+        for (int i = 0; i < population.length; i++) {
+            if (brains[i] == null) {
+                brains[i] = population[i].brain.clone();
+            }
+            brains[i].copyFrom(population[i].brain);
+            fitness[i] = population[i].fitness();
+        }
+
+        generation = Main.generation;
+        highScore = Main.highScore;
+        rngState = Main.random.getState();
+    }
+
+    public long encodedSize() {
+        long size = 4 + 4 + 4 + 8 + 8 + 4;
+        for (NeuralNetwork brain : brains) {
+            size += 8 + BrainFile.encodedSize(brain);
+        }
+        return size;
+    }
+
+    // Written through a mapping that is unmapped as soon as the arena closes
+    public void write(Path path) throws IOException {
+        long size = encodedSize();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Arena arena = Arena.ofConfined()) {
+
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            ByteBuffer out = segment.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(generation);
+            out.putDouble(highScore);
+            out.putLong(rngState);
+            out.putInt(brains.length);
+
+            for (int i = 0; i < brains.length; i++) {
+                out.putDouble(fitness[i]);
+                BrainFile.encode(brains[i], out);
+            }
+
+            segment.force();
+        }
+    }
+
+    public static PopulationSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            ByteBuffer in = segment.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a population snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported population snapshot version " + version);
+            }
+
+            int generation = in.getInt();
+            double highScore = in.getDouble();
+            long rngState = in.getLong();
+
+            // Bounded by what the file can hold before anything is allocated
+            int count = in.getInt();
+            if (count < 0) {
+                throw new IOException("Population snapshot " + path + " has a negative agent count");
+            }
+            if (count > in.remaining() / (8 + BrainFile.MIN_ENCODED_SIZE)) {
+                throw new IOException("Population snapshot " + path + " claims " + count + " agents, more than its " + in.remaining() + " remaining bytes can hold");
+            }
+            NeuralNetwork[] brains = new NeuralNetwork[count];
+            double[] fitness = new double[count];
+
+            for (int i = 0; i < count; i++) {
+                fitness[i] = in.getDouble();
+                brains[i] = BrainFile.decode(in);
+            }
+
+            return new PopulationSnapshot(generation, highScore, rngState, brains, fitness);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Population snapshot " + path + " is truncated", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+// How a NeuralNetwork stores its weights. Smaller types make big populations
+// cheaper to keep, clone and save at some cost in accuracy
+public enum Precision {
+    DOUBLE(8),
+    FLOAT(4),
+    INT8(1); // per-layer scale, weight = value * scale
+
+    public final int bytesPerWeight;
+
+    Precision(int bytesPerWeight) {
+        this.bytesPerWeight = bytesPerWeight;
+    }
+
+    public static Precision parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,59 @@
+public class PrecisionBenchmark {
+
+    // Scores one brain stored at each precision on the same seeded courses. Only storage is
+    // compared here, the brains are not mutated. When training at int8 (--precision int8) a
+    // mutation that pushes a weight past its layer's range widens that layer's scale, so int8
+    // training searches the same unbounded weight space as double and float, at coarser steps
+    public static void run(NeuralNetwork brain, int trials, int maxTicks){
+        Precision[] precisions = Precision.values();
+        double[] totals = new double[precisions.length];
+        long[] nanos = new long[precisions.length];
+
+        double deltaTime = SimulationLoop.tickSeconds;
+        long firstSeed = Main.random.nextLong();
+
+        for (int trial = 0; trial < trials; trial++) {
+
+            // All precisions run side by side on one course so they face identical obstacles
+            DinoAgent[] agents = new DinoAgent[precisions.length];
+            for (int p = 0; p < precisions.length; p++) {
+                NeuralNetwork copy = brain.clone();
+                copy.setPrecision(precisions[p]);
+                agents[p] = new DinoAgent(copy);
+            }
+
+            if (Main.course != null) Main.course.dispose();
+            Main.course = new ObstacleCourse(firstSeed + trial);
+
+            for (int tick = 0; tick < maxTicks; tick++) {
+                boolean anyAlive = false;
+
+                for (int p = 0; p < agents.length; p++) {
+                    long start = System.nanoTime();
+                    agents[p].update(deltaTime);
+                    nanos[p] += System.nanoTime() - start;
+                    agents[p].getWorld().step();
+                    anyAlive |= agents[p].alive;
+                }
+
+                if (!anyAlive) break;
+                Main.course.step(deltaTime);
+            }
+
+            for (int p = 0; p < agents.length; p++) {
+                totals[p] += agents[p].fitness();
+                agents[p].Destroy();
+            }
+            Main.CleanupDestroyed();
+        }
+
+        for (int p = 0; p < precisions.length; p++) {
+            NeuralNetwork converted = brain.clone();
+            converted.setPrecision(precisions[p]);
+
+            System.out.println(precisions[p] + ": mean fitness " + String.format("%.2f", totals[p] / trials)
+                    + ", weights " + converted.getWeightBytes() + " bytes"
+                    + ", update time " + String.format("%.1f", nanos[p] / 1000.0 / trials) + " us per run");
+        }
+    }
+}
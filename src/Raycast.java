@@ -1,4 +1,7 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public class Raycast {
     public boolean Hit = false;
@@ -7,72 +10,48 @@ public class Raycast {
     public Sprite Instance = null;
 
     public Raycast(Vector2 origin, Vector2 direction, double maxDistance, ArrayList<Sprite> ignorelist, String ignoreListType) {
+        this(Main.world, origin, direction, maxDistance, ignorelist, ignoreListType);
+    }
 
-        ArrayList<Sprite> sprites = Main.sprites;
-
-        // Normalize direction
-        double length = Math.sqrt(direction.x * direction.x + direction.y * direction.y);
-        if (length == 0) return;
-
-        direction = new Vector2(direction.x / length, direction.y / length);
-
-        double closestDistance = maxDistance;
-
-        for (Sprite sprite : sprites) {
-
-            if (!sprite.getCanCollide()) continue;
-
-            if (ignorelist != null){
-                if (ignoreListType == "blacklist"){
-                    if (ignorelist.contains(sprite)){
-                        continue;
-                    }
-                }
-                else if (ignoreListType == "whitelist"){
-                    if (!ignorelist.contains(sprite)){
-                        continue;
-                    }
-                }
-            }
-
-
-
+    public Raycast(World world, Vector2 origin, Vector2 direction, double maxDistance, ArrayList<Sprite> ignorelist, String ignoreListType) {
+        this(world, origin, direction, maxDistance, Sprite.ALL_LAYERS, toSet(ignorelist),
+                ignoreListType == null ? FilterMode.BLACKLIST : FilterMode.parse(ignoreListType));
+    }
 
-            // AABB bounds
-            double minX = sprite.Position.x - sprite.GetSize().x / 2;
-            double maxX = sprite.Position.x + sprite.GetSize().x / 2;
-            double minY = sprite.Position.y - sprite.GetSize().y / 2;
-            double maxY = sprite.Position.y + sprite.GetSize().y / 2;
+    // Only hits colliders whose category is in the mask and that pass the exception set
+    public Raycast(World world, Vector2 origin, Vector2 direction, double maxDistance, int mask, Set<Sprite> ignorelist, FilterMode ignoreListType) {
+        world.raycast(origin, direction, maxDistance, mask, ignorelist, ignoreListType, this);
+    }
 
-            // Ray vs AABB (slab method)
-            double t1 = (minX - origin.x) / direction.x;
-            double t2 = (maxX - origin.x) / direction.x;
-            double t3 = (minY - origin.y) / direction.y;
-            double t4 = (maxY - origin.y) / direction.y;
+    // Empty result for World.raycast to fill, reuse one per caller to keep queries allocation free.
+    // Position, Normal and Instance are only meaningful while Hit is true
+    public Raycast() {
+        Position = new Vector2(0,0);
+        Normal = new Vector2(0,0);
+    }
 
-            double tmin = Math.max(Math.min(t1, t2), Math.min(t3, t4));
-            double tmax = Math.min(Math.max(t1, t2), Math.max(t3, t4));
+    void clear() {
+        Hit = false;
+        Instance = null;
+    }
 
-            if (tmax < 0) continue;          // Box is behind ray
-            if (tmin > tmax) continue;       // No intersection
-            if (tmin < 0) continue;          // Ray starts inside box (optional: remove if you want inside hits)
+    void set(Sprite sprite, double x, double y, double normalX, double normalY) {
+        Hit = true;
+        Instance = sprite;
 
-            if (tmin <= closestDistance) {
-                closestDistance = tmin;
+        if (Position == null) Position = new Vector2(x, y);
+        Position.setX(x);
+        Position.setY(y);
 
-                Hit = true;
-                Instance = sprite;
-                Position = new Vector2(
-                        origin.x + direction.x * tmin,
-                        origin.y + direction.y * tmin
-                );
+        if (Normal == null) Normal = new Vector2(normalX, normalY);
+        Normal.setX(normalX);
+        Normal.setY(normalY);
+    }
 
-                // Determine normal
-                if (tmin == t1) Normal = new Vector2(-1, 0);
-                else if (tmin == t2) Normal = new Vector2(1, 0);
-                else if (tmin == t3) Normal = new Vector2(0, -1);
-                else Normal = new Vector2(0, 1);
-            }
-        }
+    private static Set<Sprite> toSet(ArrayList<Sprite> list) {
+        if (list == null) return null;
+        Set<Sprite> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(list);
+        return set;
     }
 }
@@ -0,0 +1,55 @@
+import java.util.Random;
+
+// SplitMix64 generator whose whole state is one long, so training can be
+// checkpointed and resumed with exactly the same random sequence
+public class Rng extends Random {
+
+    // Not initialised here: Random's constructor sets it through setSeed first
+    private long state;
+
+    public Rng() {
+        super();
+    }
+
+    public Rng(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = seed;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long newState) {
+        state = newState;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Polar method without Random's cached second value, which would be hidden state
+    @Override
+    public double nextGaussian() {
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * Math.sqrt(-2 * Math.log(s) / s);
+    }
+}
@@ -0,0 +1,23 @@
+public class ScalarKernels extends Kernels {
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void multiplyAdd(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] += a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void activate(Activation activation, double[] values, int offset, int length) {
+        activation.applyAll(values, offset, length);
+    }
+}
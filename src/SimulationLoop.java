@@ -0,0 +1,72 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SimulationLoop {
+
+    public static double tickSeconds = 0.016;
+
+    // Speeds, forces and timers are tuned per tick of this length and scaled for other tick lengths
+    public static final double BASE_TICK_SECONDS = 0.016;
+
+    public double timeScale = 1;
+    public int maxTicksPerFrame = 1000;
+
+    private double accumulator = 0;
+    private double alpha = 1;
+
+    private static final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    // Queues work (key commands etc.) to run on the simulation thread before the next tick
+    public static void post(Runnable action){
+        pending.add(action);
+    }
+
+    // Runs as many fixed ticks as the scaled real time allows, returns the number of ticks run
+    public int advance(double realSeconds){
+        accumulator += realSeconds * timeScale;
+
+        int ticks = 0;
+        while (accumulator >= tickSeconds && ticks < maxTicksPerFrame) {
+            tick();
+            accumulator -= tickSeconds;
+            ticks++;
+        }
+
+        // Too far behind to catch up, drop the backlog instead of spiralling
+        if (ticks == maxTicksPerFrame) {
+            accumulator = Math.min(accumulator, tickSeconds);
+        }
+
+        alpha = accumulator / tickSeconds;
+        return ticks;
+    }
+
+    // Multiplier for per-tick quantities, 1 at the base tick
+    public static double stepScale(){
+        return tickSeconds / BASE_TICK_SECONDS;
+    }
+
+    // How far rendering is between the previous and the current tick (0..1)
+    public double getAlpha(){
+        return alpha;
+    }
+
+    public static void tick(){
+        // A failing command is logged and dropped, it must not take the simulation thread down
+        Runnable action;
+        while ((action = pending.poll()) != null) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (!Main.headless) {
+            Main.world.savePreviousPositions();
+        }
+
+        // Agent worlds are saved and stepped by the population evaluator
+        Main.Step(tickSeconds);
+        Main.world.step();
+    }
+}
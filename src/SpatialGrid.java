@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Uniform grid broadphase over a world's colliders. Each sprite is filed under every cell
+// its box overlaps and refiled only when it crosses into a different set of cells
+public class SpatialGrid {
+
+    public static final double CELL_SIZE = 128;
+
+    private static class Entry {
+        final Sprite sprite;
+        int minX, minY, maxX, maxY; // cell range, inclusive
+        int queryStamp;
+        int gridIndex; // index of this grid in sprite.grids
+
+        Entry(Sprite sprite) {
+            this.sprite = sprite;
+        }
+    }
+
+    // Cells by packed coordinates, open addressing so lookups do not box the key. Cells are
+    // kept once created, there are only as many as the area the world's sprites ever covered
+    private long[] keys = new long[64];
+    private ArrayList<Entry>[] cells = newCells(64);
+    private int cellCount = 0;
+    private final IdentityHashMap<Sprite, Entry> entries = new IdentityHashMap<>();
+    private int queryStamp = 0;
+
+    public void add(Sprite sprite) {
+        if (entries.containsKey(sprite)) return;
+
+        Entry entry = new Entry(sprite);
+        entries.put(sprite, entry);
+        entry.gridIndex = sprite.grids.size();
+        sprite.grids.add(this);
+
+        setRange(entry);
+        insert(entry);
+    }
+
+    public void remove(Sprite sprite) {
+        Entry entry = entries.remove(sprite);
+        if (entry == null) return;
+
+        // Swap-removed, a sprite shared into many worlds is dropped from each in constant time
+        ArrayList<SpatialGrid> grids = sprite.grids;
+        SpatialGrid last = grids.remove(grids.size() - 1);
+        if (last != this) {
+            grids.set(entry.gridIndex, last);
+            last.entries.get(sprite).gridIndex = entry.gridIndex;
+        }
+
+        erase(entry);
+    }
+
+    // Called whenever a sprite's position or size changes
+    public void update(Sprite sprite) {
+        Entry entry = entries.get(sprite);
+        if (entry == null) return;
+
+        int minX = cell(sprite.getX() - sprite.getWidth()/2);
+        int minY = cell(sprite.getY() - sprite.getHeight()/2);
+        int maxX = cell(sprite.getX() + sprite.getWidth()/2);
+        int maxY = cell(sprite.getY() + sprite.getHeight()/2);
+
+        if (minX == entry.minX && minY == entry.minY && maxX == entry.maxX && maxY == entry.maxY) return;
+
+        erase(entry);
+        entry.minX = minX;
+        entry.minY = minY;
+        entry.maxX = maxX;
+        entry.maxY = maxY;
+        insert(entry);
+    }
+
+    // Adds every sprite whose cells overlap the box to out, each once
+    public void query(double minX, double minY, double maxX, double maxY, List<Sprite> out) {
+        int stamp = ++queryStamp;
+
+        int x0 = cell(minX);
+        int y0 = cell(minY);
+        int x1 = cell(maxX);
+        int y1 = cell(maxY);
+
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                ArrayList<Entry> bucket = cell(key(cx, cy), false);
+                if (bucket == null) continue;
+
+                for (int i = 0; i < bucket.size(); i++) {
+                    Entry entry = bucket.get(i);
+                    if (entry.queryStamp == stamp) continue;
+                    entry.queryStamp = stamp;
+                    out.add(entry.sprite);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void setRange(Entry entry) {
+        Sprite sprite = entry.sprite;
+        entry.minX = cell(sprite.getX() - sprite.getWidth()/2);
+        entry.minY = cell(sprite.getY() - sprite.getHeight()/2);
+        entry.maxX = cell(sprite.getX() + sprite.getWidth()/2);
+        entry.maxY = cell(sprite.getY() + sprite.getHeight()/2);
+    }
+
+    private void insert(Entry entry) {
+        for (int cy = entry.minY; cy <= entry.maxY; cy++) {
+            for (int cx = entry.minX; cx <= entry.maxX; cx++) {
+                cell(key(cx, cy), true).add(entry);
+            }
+        }
+    }
+
+    private void erase(Entry entry) {
+        for (int cy = entry.minY; cy <= entry.maxY; cy++) {
+            for (int cx = entry.minX; cx <= entry.maxX; cx++) {
+                ArrayList<Entry> bucket = cell(key(cx, cy), false);
+                if (bucket != null) bucket.remove(entry);
+            }
+        }
+    }
+
+    private ArrayList<Entry> cell(long key, boolean create) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (cells[slot] != null) {
+            if (keys[slot] == key) return cells[slot];
+            slot = (slot + 1) & mask;
+        }
+        if (!create) return null;
+
+        if ((cellCount + 1) * 2 > keys.length) {
+            resize();
+            return cell(key, true);
+        }
+
+        keys[slot] = key;
+        cells[slot] = new ArrayList<>();
+        cellCount++;
+        return cells[slot];
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        ArrayList<Entry>[] oldCells = cells;
+
+        keys = new long[oldKeys.length * 2];
+        cells = newCells(oldKeys.length * 2);
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCells[i] == null) continue;
+
+            int slot = hash(oldKeys[i]) & mask;
+            while (cells[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            cells[slot] = oldCells[i];
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayList<Entry>[] newCells(int length) {
+        return (ArrayList<Entry>[]) new ArrayList[length];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
@@ -2,36 +2,68 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Sprite extends GameObject {
 
-    Vector2 size = new Vector2(1, 1);
-
     String texture;
     BufferedImage image;
 
     int zIndex = 0;
     boolean visible = true;
     boolean canCollide = false;
-    String ignoreListMode = "blacklist";
-    String collisionMode = "box";
-
-    ArrayList<Sprite> collisionIgnoreList = new ArrayList<>();
-    private static final HashMap<String, BufferedImage> textureCache = new HashMap<>();
+    FilterMode ignoreListMode = FilterMode.BLACKLIST;
+    CollisionShape collisionShape = CollisionShape.BOX;
+
+    // Two sprites can collide when each one's category is in the other's mask
+    public static final int DEFAULT_LAYER = 1;
+    public static final int ALL_LAYERS = ~0;
+    int collisionCategory = DEFAULT_LAYER;
+    int collisionMask = ALL_LAYERS;
+
+    // Explicit exceptions on top of the layers, plus the sprites whose exceptions name this one
+    // so destroying a sprite only touches the sets that reference it
+    final Set<Sprite> collisionIgnoreList = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Sprite> ignoredBy = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Broadphase grids this sprite is filed in, its own world's and any it is shared with
+    final ArrayList<SpatialGrid> grids = new ArrayList<>(1);
+    int spriteIndex = -1; // index in the owning world's sprite list
+    private final ArrayList<Sprite> nearby = new ArrayList<>(16);
+    private boolean nearbyCoversProbe = false; // nearby still holds the last sweep's colliders for the ground probe
+    private Sprite sweepHit;
+
+    // Length of the downward ray from the centre that counts as standing on something, 0 = off
+    double groundProbeLength = 0;
+    private Raycast groundProbe;
+    private static final ConcurrentHashMap<String, BufferedImage> textureCache = new ConcurrentHashMap<>();
+    private AlphaMask alphaMask;
+    private final AlphaMask[] recentMasks = new AlphaMask[4]; // masks this sprite resolved before, reused when it swaps back
+    private int nextRecentMask = 0;
 
     Sprite(String texturePath, Vector2 newSize, int newZIndex, Vector2 newPos) {
-        super();
+        this(Main.world, texturePath, newSize, newZIndex, newPos);
+    }
+
+    Sprite(World ownerWorld, String texturePath, Vector2 newSize, int newZIndex, Vector2 newPos) {
+        super(ownerWorld);
         texture = texturePath;
-        size = newSize;
         zIndex = newZIndex;
-        Position = newPos;
+        bodies.width[body] = newSize.x;
+        bodies.height[body] = newSize.y;
+        bodies.x[body] = newPos.x;
+        bodies.y[body] = newPos.y;
+        savePreviousPosition();
+        setFlag(PhysicsStore.MOVE_CALLBACK, true);
         Start();
     }
 
     private void Start() {
-        Main.sprites.add(this);
+        world.addSprite(this);
         loadImage(texture);
     }
 
@@ -39,16 +71,26 @@ public class Sprite extends GameObject {
     private void loadImage(String texPath) {
         if (texPath == null) return;
 
-        if (textureCache.containsKey(texPath)) {
-            image = textureCache.get(texPath);
-        } else {
-            try {
-                BufferedImage loaded = ImageIO.read(getClass().getResource(texPath));
-                textureCache.put(texPath, loaded);
-                image = loaded;
-            } catch (IOException | IllegalArgumentException e) {
-                e.printStackTrace();
-            }
+        BufferedImage loaded = getTexture(texPath);
+        if (loaded != null) image = loaded;
+    }
+
+    // Cached texture, or null if it cannot be loaded
+    public static BufferedImage getTexture(String texPath) {
+        BufferedImage cached = textureCache.get(texPath);
+        if (cached != null) return cached;
+
+        try {
+            BufferedImage loaded = ImageIO.read(Sprite.class.getResource(texPath));
+            if (loaded == null) return null;
+
+            // Workers retexturing agents can load the same texture at once, all of them keep the
+            // first image cached so sprites agree on it and their cached alpha masks match
+            BufferedImage raced = textureCache.putIfAbsent(texPath, loaded);
+            return raced != null ? raced : loaded;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
         }
     }
 
@@ -59,12 +101,65 @@ public class Sprite extends GameObject {
         }
     }
 
+    // Opaque pixels of the current texture at the current size, null without a texture
+    public AlphaMask getAlphaMask() {
+        if (image == null) return null;
+
+        int width = (int) Math.round(getWidth());
+        int height = (int) Math.round(getHeight());
+        if (alphaMask != null && alphaMask.matches(image, width, height)) return alphaMask;
+
+        // A duck/stand swap lands on a mask seen before, only a new texture or size goes to the shared cache
+        for (AlphaMask recent : recentMasks) {
+            if (recent != null && recent.matches(image, width, height)) {
+                alphaMask = recent;
+                return alphaMask;
+            }
+        }
+
+        alphaMask = texture == null ? AlphaMask.build(image, width, height) : AlphaMask.get(texture, image, width, height);
+        recentMasks[nextRecentMask] = alphaMask;
+        nextRecentMask = (nextRecentMask + 1) % recentMasks.length;
+        return alphaMask;
+    }
+
     public void setIgnoreListMode(String newMode){
+        ignoreListMode = FilterMode.parse(newMode);
+    }
+
+    public void setIgnoreListMode(FilterMode newMode){
         ignoreListMode = newMode;
     }
 
     public void addToIgnoreList(Sprite spriteToAdd){
-        collisionIgnoreList.add(spriteToAdd);
+        if (collisionIgnoreList.add(spriteToAdd)) {
+            spriteToAdd.ignoredBy.add(this);
+        }
+    }
+
+    public void removeFromIgnoreList(Sprite spriteToRemove){
+        if (collisionIgnoreList.remove(spriteToRemove)) {
+            spriteToRemove.ignoredBy.remove(this);
+        }
+    }
+
+    public void setCollisionLayers(int category, int mask){
+        collisionCategory = category;
+        collisionMask = mask;
+    }
+
+    public int getCollisionCategory() { return collisionCategory; }
+    public int getCollisionMask() { return collisionMask; }
+
+    // Layer and exception checks only, the shapes are tested by isCollidingAt
+    public boolean shouldCollideWith(Sprite other){
+        if ((collisionMask & other.collisionCategory) == 0 || (other.collisionMask & collisionCategory) == 0) {
+            return false;
+        }
+        if (ignoreListMode == FilterMode.BLACKLIST) {
+            return !collisionIgnoreList.contains(other);
+        }
+        return collisionIgnoreList.contains(other);
     }
 
     public void setZIndex(int newZIndex) {
@@ -76,12 +171,71 @@ public class Sprite extends GameObject {
     }
 
     public void setSize(double newX, double newY) {
-        size = new Vector2(newX, newY);
+        bodies.width[body] = newX;
+        bodies.height[body] = newY;
+        updateGrids();
+    }
+
+    public double getWidth() {
+        return bodies.width[body];
+    }
+
+    public double getHeight() {
+        return bodies.height[body];
+    }
+
+    @Override
+    public void GoTo(double xPos, double yPos) {
+        super.GoTo(xPos, yPos);
+        updateGrids();
+    }
+
+    @Override
+    public void GoTo(Vector2 newPos) {
+        super.GoTo(newPos);
+        updateGrids();
+    }
+
+    public void setGroundProbe(double length) {
+        groundProbeLength = length;
+    }
+
+    // With a probe set, grounded means a surface is within reach below, not that the fall was blocked.
+    // Swept moves land flush, so both agree at rest, but the probe also counts the last few units of
+    // a fall as grounded. The agents' jump timing and trained brains depend on that reach, letting
+    // blocked falls decide instead changes when they can jump
+    @Override
+    void updateContacts() {
+        if (groundProbeLength <= 0) return;
+
+        if (groundProbe == null) groundProbe = new Raycast();
+        if (nearbyCoversProbe) {
+            grounded = world.raycast(nearby, getX(), getY(), 0, 1, groundProbeLength, collisionMask, null, FilterMode.BLACKLIST, groundProbe);
+            nearby.clear();
+            nearbyCoversProbe = false;
+        } else {
+            grounded = world.raycast(getX(), getY(), 0, 1, groundProbeLength, collisionMask, null, FilterMode.BLACKLIST, groundProbe);
+        }
+        if (grounded && contactSprite == null) {
+            contactSprite = groundProbe.Instance;
+            contactNormal.setX(groundProbe.Normal.x);
+            contactNormal.setY(groundProbe.Normal.y);
+        }
+    }
+
+    private void updateGrids() {
+        for (int i = 0; i < grids.size(); i++) {
+            grids.get(i).update(this);
+        }
     }
 
     public void setCollision(boolean enabled, String mode) {
+        setCollision(enabled, CollisionShape.parse(mode));
+    }
+
+    public void setCollision(boolean enabled, CollisionShape shape) {
         canCollide = enabled;
-        collisionMode = mode.toLowerCase();
+        collisionShape = shape;
     }
 
     public void setCollision(boolean enabled) {
@@ -90,173 +244,163 @@ public class Sprite extends GameObject {
 
     public boolean GetVisible() { return visible; }
     public boolean getCanCollide() { return canCollide; }
-    public String getCollisionMode() { return collisionMode; }
+    public CollisionShape getCollisionShape() { return collisionShape; }
     public int GetZIndex() { return zIndex; }
     public BufferedImage GetImage() { return image; }
-    public Vector2 GetSize() { return size; }
+    public Vector2 GetSize() { return new Vector2(getWidth(), getHeight()); }
 
     // ---------------- COLLISION METHODS ----------------
 
-    private boolean boxCollision(double newX, double newY, Sprite other) {
-        double ax1 = newX - size.x/2;
-        double ay1 = newY - size.y/2;
-        double ax2 = newX + size.x/2;
-        double ay2 = newY + size.y/2;
-
-        double bx1 = other.Position.x - other.size.x/2;
-        double by1 = other.Position.y - other.size.y/2;
-        double bx2 = other.Position.x + other.size.x/2;
-        double by2 = other.Position.y + other.size.y/2;
-
-        return ax1 < bx2 && ax2 > bx1 &&
-                ay1 < by2 && ay2 > by1;
+    public boolean isCollidingAt(double newX, double newY, Sprite other) {
+        if (!other.canCollide) return false;
+        return Narrowphase.test(this, newX, newY, other, other.getX(), other.getY());
     }
 
-    private boolean transparencyCollision(double newX, double newY, Sprite other) {
-        if (image == null || other.image == null) return false;
-
-        double ax1 = newX - size.x/2;
-        double ay1 = newY - size.y/2;
-        double ax2 = newX + size.x/2;
-        double ay2 = newY + size.y/2;
-
-        double bx1 = other.Position.x - other.size.x/2;
-        double by1 = other.Position.y - other.size.y/2;
-        double bx2 = other.Position.x + other.size.x/2;
-        double by2 = other.Position.y + other.size.y/2;
-
-        int ox1 = (int) Math.max(ax1, bx1);
-        int oy1 = (int) Math.max(ay1, by1);
-        int ox2 = (int) Math.min(ax2, bx2);
-        int oy2 = (int) Math.min(ay2, by2);
-
-        if (ox1 >= ox2 || oy1 >= oy2) return false;
-
-        for (int y = oy1; y < oy2; y++) {
-            for (int x = ox1; x < ox2; x++) {
+    // ---------------- MOVEMENT ----------------
 
-                int ax = (int) ((x - ax1) * image.getWidth() / size.x);
-                int ay = (int) ((y - ay1) * image.getHeight() / size.y);
+    // Moves one axis at a time, stopping flush against the first collider in the way and
+    // cancelling only the blocked axis of the velocity
+    @Override
+    public void Move(double dx, double dy) {
+        PhysicsStore store = bodies;
+        int i = body;
 
-                int bx = (int) ((x - bx1) * other.image.getWidth() / other.size.x);
-                int by = (int) ((y - by1) * other.image.getHeight() / other.size.y);
+        if (!canCollide) {
+            store.x[i] += dx;
+            store.y[i] += dy;
+            updateGrids();
+            return;
+        }
 
-                if (ax < 0 || ay < 0 || bx < 0 || by < 0) continue;
-                if (ax >= image.getWidth() || ay >= image.getHeight()) continue;
-                if (bx >= other.image.getWidth() || by >= other.image.getHeight()) continue;
+        double halfW = store.width[i] / 2;
+        double halfH = store.height[i] / 2;
+
+        // Only colliders near the swept box can block, the grid hands back just those.
+        // Only this world's thread moves its sprites, so the grid can be read directly.
+        // The box reaches down as far as the ground probe from wherever the move ends, so
+        // the probe that follows in the physics step tests these instead of querying again
+        ArrayList<Sprite> candidates = nearby;
+        candidates.clear();
+        world.queryColliders(
+                Math.min(store.x[i], store.x[i] + dx) - halfW,
+                Math.min(store.y[i], store.y[i] + dy) - halfH,
+                Math.max(store.x[i], store.x[i] + dx) + halfW,
+                Math.max(store.y[i], store.y[i] + dy) + Math.max(halfH, groundProbeLength),
+                candidates);
 
-                if (((image.getRGB(ax, ay) >>> 24) != 0) &&
-                        ((other.image.getRGB(bx, by) >>> 24) != 0)) {
-                    return true;
-                }
+        // X axis
+        if (dx != 0) {
+            double t = sweep(candidates, dx, 0);
+            store.x[i] += dx * t;
+            if (sweepHit != null) {
+                setContact(sweepHit, -Math.signum(dx), 0);
+                store.velocityX[i] = 0;
             }
         }
 
-        return false;
-    }
-
-    private boolean tilemapCollision(double newX, double newY, Tilemap map) {
-        double ax1 = newX - size.x / 2;
-        double ay1 = newY - size.y / 2;
-        double ax2 = newX + size.x / 2;
-        double ay2 = newY + size.y / 2;
-
-        double tileSize = map.getTileWorldSize();
-        double mapLeft = map.Position.x - map.size.x / 2;
-        double mapTop  = map.Position.y - map.size.y / 2;
-
-        int startX = (int) Math.floor((ax1 - mapLeft) / tileSize);
-        int endX   = (int) Math.floor((ax2 - mapLeft - 0.0001) / tileSize);
-        int startY = (int) Math.floor((ay1 - mapTop) / tileSize);
-        int endY   = (int) Math.floor((ay2 - mapTop - 0.0001) / tileSize);
-
-        for (int ty = startY; ty <= endY; ty++) {
-            for (int tx = startX; tx <= endX; tx++) {
-                Vector2 worldPos = new Vector2(
-                        mapLeft + tx * tileSize + tileSize / 2,
-                        mapTop  + ty * tileSize + tileSize / 2
-                );
-
-                if (map.getTileAtWorldPos(worldPos) >= 0) {
-                    return true;
-                }
+        // Y axis
+        if (dy != 0) {
+            double t = sweep(candidates, 0, dy);
+            store.y[i] += dy * t;
+            if (sweepHit != null) {
+                setContact(sweepHit, 0, -Math.signum(dy));
+                store.velocityY[i] = 0;
             }
         }
 
-        return false;
+        // Kept only for a probe, which clears it
+        nearbyCoversProbe = groundProbeLength > 0;
+        if (!nearbyCoversProbe) candidates.clear();
+        sweepHit = null;
+        updateGrids();
     }
 
-    public boolean isCollidingAt(double newX, double newY, Sprite other) {
-        if (!other.canCollide) return false;
+    // Fraction of the move along one axis that is free, the blocking sprite is left in sweepHit
+    private double sweep(ArrayList<Sprite> candidates, double dx, double dy) {
+        double earliest = 1;
+        sweepHit = null;
 
-        if (other instanceof Tilemap) {
-            if (!other.collisionMode.equals("tilemap")) return false;
-            return tilemapCollision(newX, newY, (Tilemap) other);
-        }
+        for (int i = 0; i < candidates.size(); i++) {
+            Sprite other = candidates.get(i);
+            if (other == this || !other.canCollide || !shouldCollideWith(other)) continue;
 
-        if (collisionMode.equals("box") && other.collisionMode.equals("box")) {
-            return boxCollision(newX, newY, other);
-        }
+            double t = collisionShape == CollisionShape.BOX && other.collisionShape == CollisionShape.BOX
+                    ? boxTimeOfImpact(other, dx, dy)
+                    : searchTimeOfImpact(other, dx, dy);
 
-        if (collisionMode.equals("transparency") || other.collisionMode.equals("transparency")) {
-            return transparencyCollision(newX, newY, other);
+            if (t < earliest) {
+                earliest = t;
+                sweepHit = other;
+            }
         }
 
-        return false;
+        return earliest;
     }
 
-    // ---------------- MOVEMENT ----------------
-
-    public void Move(Vector2 direction) {
-        double targetX = Position.x + direction.x;
-        double targetY = Position.y + direction.y;
-
-        if (!canCollide) {
-            Position.x = targetX;
-            Position.y = targetY;
-            return;
-        }
-
-        ArrayList<Sprite> spriteSnapshot;
-        synchronized (Main.sprites) {
-            spriteSnapshot = new ArrayList<>(Main.sprites);
+    // Exact time the box's leading edge reaches the other box, 1 if it never does this step
+    private double boxTimeOfImpact(Sprite other, double dx, double dy) {
+        double ax1 = getX() - getWidth()/2;
+        double ay1 = getY() - getHeight()/2;
+        double ax2 = getX() + getWidth()/2;
+        double ay2 = getY() + getHeight()/2;
+
+        double bx1 = other.getX() - other.getWidth()/2;
+        double by1 = other.getY() - other.getHeight()/2;
+        double bx2 = other.getX() + other.getWidth()/2;
+        double by2 = other.getY() + other.getHeight()/2;
+
+        double t;
+        if (dx != 0) {
+            if (!(ay1 < by2 && ay2 > by1)) return 1;
+            if (ax1 < bx2 && ax2 > bx1) return 0; // already overlapping, hold still
+            t = dx > 0 ? (bx1 - ax2) / dx : (bx2 - ax1) / dx;
+        } else {
+            if (!(ax1 < bx2 && ax2 > bx1)) return 1;
+            if (ay1 < by2 && ay2 > by1) return 0;
+            t = dy > 0 ? (by1 - ay2) / dy : (by2 - ay1) / dy;
         }
 
-        // X axis
-        double newX = targetX;
-        for (Sprite other : spriteSnapshot) {
-            if (other == this) continue;
-            if (ignoreListMode.equals("blacklist") && collisionIgnoreList.contains(other)) continue;
-            if (ignoreListMode.equals("whitelist") && !collisionIgnoreList.contains(other)) continue;
-            if (isCollidingAt(newX, Position.y, other)) {
-                newX = Position.x;
-                this.setVelocity(new Vector2(0,0));
-                break;
-            }
-        }
-        Position.x = newX;
+        return t >= 0 && t < 1 ? t : 1;
+    }
 
-        // Y axis
-        double newY = targetY;
-        for (Sprite other : spriteSnapshot) {
-            if (other == this) continue;
-            if (ignoreListMode.equals("blacklist") && collisionIgnoreList.contains(other)) continue;
-            if (ignoreListMode.equals("whitelist") && !collisionIgnoreList.contains(other)) continue;
-            if (isCollidingAt(Position.x, newY, other)) {
-                newY = Position.y;
-                this.setVelocity(new Vector2(0,0));
-                break;
+    // Other shapes are only tested at the end of the step, then bisected back to the contact
+    private double searchTimeOfImpact(Sprite other, double dx, double dy) {
+        double x = getX();
+        double y = getY();
+        if (!isCollidingAt(x + dx, y + dy, other)) return 1;
+        if (isCollidingAt(x, y, other)) return 0;
+
+        double free = 0;
+        double blocked = 1;
+        for (int i = 0; i < 12; i++) {
+            double mid = (free + blocked) / 2;
+            if (isCollidingAt(x + dx * mid, y + dy * mid, other)) {
+                blocked = mid;
+            } else {
+                free = mid;
             }
         }
-        Position.y = newY;
+        return free;
     }
 
     @Override
     public void OnDestroy() {
-        Main.sprites.remove(this);
-        for (Sprite s : Main.sprites){
-            s.collisionIgnoreList.remove(this);
+        world.removeSprite(this);
+        for (int i = grids.size() - 1; i >= 0; i--) {
+            grids.get(i).remove(this);
+        }
+        // Checked first, iterating even an empty set allocates an iterator
+        if (!ignoredBy.isEmpty()) {
+            for (Sprite s : ignoredBy){
+                s.collisionIgnoreList.remove(this);
+            }
+        }
+        if (!collisionIgnoreList.isEmpty()) {
+            for (Sprite s : collisionIgnoreList){
+                s.ignoredBy.remove(this);
+            }
         }
+        ignoredBy.clear();
         collisionIgnoreList.clear();
         image = null;
     }
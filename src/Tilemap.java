@@ -20,6 +20,7 @@ public class Tilemap extends Sprite {
         this.tileWorldSize = tileWorldSize;
 
         this.tilesetColumns = tileset.getWidth() / tilePixelSize;
+        this.collisionShape = CollisionShape.TILEMAP;
 
         buildTilemapImage();
     }
@@ -80,7 +81,7 @@ public class Tilemap extends Sprite {
         g.dispose();
 
         this.image = mapImage;
-        this.size = new Vector2(mapWorldWidth, mapWorldHeight);
+        setSize(mapWorldWidth, mapWorldHeight);
     }
 
     public int getTilePixelSize(){
@@ -93,8 +94,8 @@ public class Tilemap extends Sprite {
 
     public Vector2 worldToTile(Vector2 worldPos){
 
-        double mapLeft = Position.x - size.x / 2;
-        double mapTop  = Position.y - size.y / 2;
+        double mapLeft = getX() - getWidth() / 2;
+        double mapTop  = getY() - getHeight() / 2;
 
         return new Vector2(
                 Math.floor((worldPos.x - mapLeft) / tileWorldSize),
@@ -104,9 +105,11 @@ public class Tilemap extends Sprite {
 
     public int getTileAtWorldPos(Vector2 worldPos){
         Vector2 t = worldToTile(worldPos);
-        int x = (int) t.x;
-        int y = (int) t.y;
+        return getTile((int) t.x, (int) t.y);
+    }
 
+    // Tile index at a grid cell, -1 outside the map
+    public int getTile(int x, int y){
         if (y < 0 || y >= tiles.length || x < 0 || x >= tiles[0].length) {
             return -1;
         }
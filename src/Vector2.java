@@ -18,6 +18,49 @@ public class Vector2 {
         y = newY;
     }
 
+    // In-place operations for hot paths, named after the existing setX/Add. Unlike Lerp and
+    // Unit they never allocate, the ones returning a vector return this
+
+    public Vector2 set(double newX, double newY){
+        x = newX;
+        y = newY;
+        return this;
+    }
+
+    public Vector2 set(Vector2 other){
+        x = other.x;
+        y = other.y;
+        return this;
+    }
+
+    public Vector2 Add(double dx, double dy){
+        x += dx;
+        y += dy;
+        return this;
+    }
+
+    public Vector2 AddScaled(Vector2 other, double scale){
+        x += other.x * scale;
+        y += other.y * scale;
+        return this;
+    }
+
+    public Vector2 Scale(double factor){
+        x *= factor;
+        y *= factor;
+        return this;
+    }
+
+    // In-place counterpart of Unit, which returns a new vector. A zero vector stays zero
+    public Vector2 Normalize(){
+        double length = Math.sqrt(x*x + y*y);
+        if (length > 0) {
+            x /= length;
+            y /= length;
+        }
+        return this;
+    }
+
     public double getMagnitude(){
         return Math.sqrt(x*x + y*y);
     }
@@ -33,8 +76,7 @@ public class Vector2 {
     }
 
     public void Add(Vector2 secondVector){
-        x += secondVector.x;
-        y += secondVector.y;
+        Add(secondVector.x, secondVector.y);
     }
 
     public Vector2 Unit(){
@@ -0,0 +1,92 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public static String describe() {
+        return SPECIES.length() + " doubles per vector";
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void multiplyAdd(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            DoubleVector vo = DoubleVector.fromArray(SPECIES, out, outOffset + i);
+            va.fma(vb, vo).intoArray(out, outOffset + i);
+        }
+
+        for (; i < length; i++) {
+            out[outOffset + i] += a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void activate(Activation activation, double[] values, int offset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+
+        // Activations without a vector form (the lookup table) stay scalar
+        if (activation == Activation.TANH_LUT) {
+            bound = 0;
+        }
+
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, values, offset + i);
+            apply(activation, x).intoArray(values, offset + i);
+        }
+
+        activation.applyAll(values, offset + i, length - i);
+    }
+
+    private static DoubleVector apply(Activation activation, DoubleVector x) {
+        switch (activation) {
+            case TANH_PADE -> {
+                x = x.max(-Activation.PADE_CLAMP).min(Activation.PADE_CLAMP);
+                DoubleVector x2 = x.mul(x);
+
+                DoubleVector numerator = x2.add(378).mul(x2).add(17325).mul(x2).add(135135).mul(x);
+                DoubleVector denominator = x2.mul(28).add(3150).mul(x2).add(62370).mul(x2).add(135135);
+
+                return numerator.div(denominator).max(-1).min(1);
+            }
+            case HARD_TANH -> {
+                return x.max(-1).min(1);
+            }
+            case RELU -> {
+                return x.max(0);
+            }
+            case SIGMOID -> {
+                DoubleVector one = DoubleVector.broadcast(x.species(), 1);
+                return one.div(x.neg().lanewise(VectorOperators.EXP).add(1));
+            }
+            default -> {
+                return x.lanewise(VectorOperators.TANH);
+            }
+        }
+    }
+}
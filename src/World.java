@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class World {
+
+    final EntityRegistry objects = new EntityRegistry();
+    final PhysicsStore bodies = new PhysicsStore();
+
+    // Drawn sprites, each knows its index here so it is swap-removed
+    final ArrayList<Sprite> sprites = new ArrayList<>();
+
+    // Everything bodies in this world collide with, own sprites plus shared ones like the floor
+    final SpatialGrid grid = new SpatialGrid();
+    private final ArrayList<Sprite> shared = new ArrayList<>(1);
+
+    // Objects destroyed since the last cleanup, so cleanup never walks the live ones
+    private final ArrayList<GameObject> destroyed = new ArrayList<>(4);
+    private final ArrayList<Sprite> queryScratch = new ArrayList<>(16);
+
+    private boolean disposed = false;
+
+    // Registers an object, returns its handle
+    public long add(GameObject object){
+        return objects.add(object);
+    }
+
+    // The object behind a handle, or null once it has been destroyed and cleaned up
+    public GameObject resolve(long handle){
+        return objects.resolve(handle);
+    }
+
+    public void addSprite(Sprite sprite){
+        synchronized (sprites) {
+            sprite.spriteIndex = sprites.size();
+            sprites.add(sprite);
+        }
+        grid.add(sprite);
+    }
+
+    // Lets bodies in this world collide with a sprite owned by another world
+    public void share(Sprite sprite){
+        shared.add(sprite);
+        grid.add(sprite);
+    }
+
+    public void removeSprite(Sprite sprite){
+        synchronized (sprites) {
+            int index = sprite.spriteIndex;
+            if (index >= 0 && index < sprites.size() && sprites.get(index) == sprite) {
+                Sprite last = sprites.remove(sprites.size() - 1);
+                if (last != sprite) {
+                    sprites.set(index, last);
+                    last.spriteIndex = index;
+                }
+            }
+            sprite.spriteIndex = -1;
+        }
+        grid.remove(sprite);
+    }
+
+    public EntityRegistry getObjects(){
+        return objects;
+    }
+
+    // Colliders whose grid cells overlap the box, a superset of the ones actually touching it
+    public void queryColliders(double minX, double minY, double maxX, double maxY, List<Sprite> out){
+        grid.query(minX, minY, maxX, maxY, out);
+    }
+
+    // Copies the sprites to draw, safe to call from the render thread
+    public void collectSprites(List<Sprite> out){
+        synchronized (sprites) {
+            out.addAll(sprites);
+        }
+    }
+
+    public boolean raycast(Vector2 origin, Vector2 direction, double maxDistance, int mask, Raycast hitOut){
+        return raycast(origin, direction, maxDistance, mask, null, FilterMode.BLACKLIST, hitOut);
+    }
+
+    // Nearest collider hit along the ray within maxDistance, written into hitOut. Only colliders in
+    // grid cells the ray's bounding box touches are tested. Must be called from this world's thread
+    public boolean raycast(Vector2 origin, Vector2 direction, double maxDistance, int mask, Set<Sprite> ignorelist, FilterMode ignoreListType, Raycast hitOut){
+        return raycast(origin.x, origin.y, direction.x, direction.y, maxDistance, mask, ignorelist, ignoreListType, hitOut);
+    }
+
+    // Same query on plain coordinates, so callers never share a Vector2 with another thread
+    public boolean raycast(double originX, double originY, double directionX, double directionY, double maxDistance, int mask, Set<Sprite> ignorelist, FilterMode ignoreListType, Raycast hitOut){
+        hitOut.clear();
+
+        // Normalize direction
+        double length = Math.sqrt(directionX * directionX + directionY * directionY);
+        if (length == 0) return false;
+
+        double dx = directionX / length;
+        double dy = directionY / length;
+
+        ArrayList<Sprite> candidates = queryScratch;
+        candidates.clear();
+        grid.query(
+                Math.min(originX, originX + dx * maxDistance),
+                Math.min(originY, originY + dy * maxDistance),
+                Math.max(originX, originX + dx * maxDistance),
+                Math.max(originY, originY + dy * maxDistance),
+                candidates);
+
+        raycast(candidates, originX, originY, dx, dy, maxDistance, mask, ignorelist, ignoreListType, hitOut);
+        candidates.clear();
+        return hitOut.Hit;
+    }
+
+    // Ray test against colliders already gathered, which must include every one the ray's bounding
+    // box touches. Direction must be normalized. Lets a body reuse the query of its own sweep
+    boolean raycast(List<Sprite> candidates, double originX, double originY, double dx, double dy, double maxDistance, int mask, Set<Sprite> ignorelist, FilterMode ignoreListType, Raycast hitOut){
+        hitOut.clear();
+        double closestDistance = maxDistance;
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Sprite sprite = candidates.get(i);
+
+            if (!sprite.getCanCollide()) continue;
+            if ((sprite.getCollisionCategory() & mask) == 0) continue;
+
+            if (ignorelist != null){
+                if (ignoreListType == FilterMode.BLACKLIST && ignorelist.contains(sprite)) continue;
+                if (ignoreListType == FilterMode.WHITELIST && !ignorelist.contains(sprite)) continue;
+            }
+
+            // AABB bounds
+            double minX = sprite.getX() - sprite.getWidth() / 2;
+            double maxX = sprite.getX() + sprite.getWidth() / 2;
+            double minY = sprite.getY() - sprite.getHeight() / 2;
+            double maxY = sprite.getY() + sprite.getHeight() / 2;
+
+            // Ray vs AABB (slab method)
+            double t1 = (minX - originX) / dx;
+            double t2 = (maxX - originX) / dx;
+            double t3 = (minY - originY) / dy;
+            double t4 = (maxY - originY) / dy;
+
+            double tmin = Math.max(Math.min(t1, t2), Math.min(t3, t4));
+            double tmax = Math.min(Math.max(t1, t2), Math.max(t3, t4));
+
+            if (tmax < 0) continue;          // Box is behind ray
+            if (tmin > tmax) continue;       // No intersection
+            if (tmin < 0) continue;          // Ray starts inside box
+
+            if (tmin <= closestDistance) {
+                closestDistance = tmin;
+
+                // Normal of the face the ray entered through
+                double normalX = 0, normalY = 1;
+                if (tmin == t1) { normalX = -1; normalY = 0; }
+                else if (tmin == t2) { normalX = 1; normalY = 0; }
+                else if (tmin == t3) { normalY = -1; }
+
+                hitOut.set(sprite, originX + dx * tmin, originY + dy * tmin, normalX, normalY);
+            }
+        }
+
+        return hitOut.Hit;
+    }
+
+    public void step(){
+        Physics.step(bodies);
+    }
+
+    public void savePreviousPositions(){
+        bodies.savePreviousPositions();
+    }
+
+    // Called by GameObject.Destroy, from whichever thread steps this world
+    void queueDestroyed(GameObject object){
+        destroyed.add(object);
+    }
+
+    // Removes the objects destroyed since the last call, cost is linear in those alone
+    public void cleanupDestroyed(){
+
+        // OnDestroy may destroy more objects, they are picked up in the same pass
+        for (int i = 0; i < destroyed.size(); i++) {
+            GameObject obj = destroyed.get(i);
+            obj.OnDestroy();
+            objects.remove(obj.handle);
+            obj.detachBody();
+        }
+
+        destroyed.clear();
+    }
+
+    // Also drops shared sprites from this world's grid, so they are not left filed in dead worlds
+    public void dispose(){
+        if (disposed) return;
+        disposed = true;
+
+        for (int i = 0; i < shared.size(); i++) {
+            grid.remove(shared.get(i));
+        }
+        shared.clear();
+    }
+
+    public boolean isDisposed(){
+        return disposed;
+    }
+}